@@ -4,6 +4,7 @@
 AS726X sensor;
 String command = "";
 const int BULB_PIN = 3;
+const char FIRMWARE_ID[] = "ID AS726X new_measure 3";
 
 // -------- DEFAULTS --------
 int defaultIntegration = 50;   // ms
@@ -12,6 +13,28 @@ int defaultAvg = 1;            // number of measurements
 bool defaultCalibrated = true;
 int defaultLightInt = 50; // 0..100
 
+// -------- STREAMING --------
+bool streaming = false;
+int streamAvg = 1;
+bool streamCalibrated = true;
+
+// -------- SESSION --------
+// "config ..." stores the settings once; each TRIGGER byte then takes one
+// reading with them, tagged with a sequence id counting up from config seq=
+const char TRIGGER = '!';
+int sessionIntegration = 50;
+int sessionGain = 16;
+int sessionAvg = 1;
+bool sessionCalibrated = true;
+int sessionLightInt = 50;
+bool sessionApplied = false;   // sensor currently set to the session settings
+uint16_t triggerSeq = 0;
+
+// -------- FRAME PROTOCOL --------
+// Binary frame: A5 5A | seq (uint16) | 6 x float32 | CRC16, little-endian
+bool binaryProtocol = false;
+uint16_t frameSeq = 0;
+
 
 void setup() {
   Serial.begin(115200);
@@ -34,20 +57,53 @@ void setup() {
 void loop() {
   while (Serial.available()) {
     char c = Serial.read();
-    if (c == '\n' || c == '\r') {
+    if (c == TRIGGER && command.length() == 0) {
+      handleTrigger();
+    } else if (c == '\n' || c == '\r') {
       handleCommand(command);
       command = "";
     } else {
       command += c;
     }
   }
+
+  // Emit frames back to back until "stop"
+  if (streaming) {
+    takeAveragedMeasurement(streamAvg, streamCalibrated, -1);
+  }
 }
 
 // ---------------- COMMAND HANDLING ----------------
 
 void handleCommand(String cmd) {
   cmd.trim();
-  if (!cmd.startsWith("read")) return;
+
+  if (cmd == "id") {
+    Serial.println(FIRMWARE_ID);
+    return;
+  }
+
+  if (cmd == "stop") {
+    streaming = false;
+    Serial.println("STOPPED");
+    return;
+  }
+
+  if (cmd == "proto bin") {
+    Serial.println("PROTO BIN");
+    binaryProtocol = true;
+    return;
+  }
+
+  if (cmd == "proto csv") {
+    binaryProtocol = false;
+    Serial.println("PROTO CSV");
+    return;
+  }
+
+  bool stream = cmd.startsWith("stream");
+  bool config = cmd.startsWith("config");
+  if (!stream && !config && !cmd.startsWith("read")) return;
 
   // Start with defaults
   int integration = defaultIntegration;
@@ -55,9 +111,10 @@ void handleCommand(String cmd) {
   int avg = defaultAvg;
   bool calibrated = defaultCalibrated;
   int lightInt = defaultLightInt;
+  long seq = -1;                 // echoed back when given
 
-  // Remove "read"
-  cmd = cmd.substring(4);
+  // Remove "read" / "stream" / "config"
+  cmd = cmd.substring(stream || config ? 6 : 4);
   cmd.trim();
 
   // Parse key=value pairs
@@ -96,10 +153,48 @@ void handleCommand(String cmd) {
       lightInt = value.toInt();
       if (lightInt < 0) lightInt = 0;
       if (lightInt > 100) lightInt = 100;
+    } else if (key == "seq") {
+      seq = value.toInt();
     }
   }
 
   // Apply settings
+  applySettings(integration, gain, lightInt);
+  sessionApplied = false;
+
+  if (config) {
+    sessionIntegration = integration;
+    sessionGain = gain;
+    sessionAvg = avg;
+    sessionCalibrated = calibrated;
+    sessionLightInt = lightInt;
+    sessionApplied = true;
+    triggerSeq = seq >= 0 ? seq : 0;
+    Serial.println("CONFIG OK");
+    return;
+  }
+
+  if (stream) {
+    streamAvg = avg;
+    streamCalibrated = calibrated;
+    streaming = true;
+    return;
+  }
+
+  // Take measurements
+  takeAveragedMeasurement(avg, calibrated, seq);
+}
+
+void handleTrigger() {
+  // A full read/stream command in between may have changed the sensor
+  if (!sessionApplied) {
+    applySettings(sessionIntegration, sessionGain, sessionLightInt);
+    sessionApplied = true;
+  }
+  takeAveragedMeasurement(sessionAvg, sessionCalibrated, triggerSeq++);
+}
+
+void applySettings(int integration, int gain, int lightInt) {
   sensor.setIntegrationTime(integration);
   uint8_t gainCode;
   if (gain <= 1) {
@@ -115,14 +210,11 @@ void handleCommand(String cmd) {
 
   int pwm = map(lightInt, 0, 100, 0, 255);
   analogWrite(BULB_PIN, pwm);
-
-  // Take measurements
-  takeAveragedMeasurement(avg, calibrated);
 }
 
 // ---------------- MEASUREMENT ----------------
 
-void takeAveragedMeasurement(int avg, bool calibrated) {
+void takeAveragedMeasurement(int avg, bool calibrated, long seq) {
 
   float sum[6] = {0, 0, 0, 0, 0, 0};
 
@@ -146,11 +238,56 @@ void takeAveragedMeasurement(int avg, bool calibrated) {
     }
   }
 
-  // Output CSV
+  float values[6];
+  for (int i = 0; i < 6; i++) {
+    values[i] = sum[i] / avg;
+  }
+
+  if (binaryProtocol) {
+    if (seq >= 0) frameSeq = seq;
+    sendBinaryFrame(values);
+    return;
+  }
+
+  // Output CSV, pipelined reads are prefixed with "#<seq> "
+  if (seq >= 0) {
+    Serial.print("#");
+    Serial.print(seq);
+    Serial.print(" ");
+  }
   for (int i = 0; i < 6; i++) {
-    float value = sum[i] / avg;
-    Serial.print(value, 3);
+    Serial.print(values[i], 3);
     if (i < 5) Serial.print(",");
   }
   Serial.println();
 }
+
+// ---------------- BINARY FRAMES ----------------
+
+uint16_t crc16(const uint8_t *data, size_t length) {
+  uint16_t crc = 0xFFFF;
+  for (size_t i = 0; i < length; i++) {
+    crc ^= (uint16_t)data[i] << 8;
+    for (uint8_t bit = 0; bit < 8; bit++) {
+      crc = (crc & 0x8000) ? (crc << 1) ^ 0x1021 : crc << 1;
+    }
+  }
+  return crc;
+}
+
+void sendBinaryFrame(const float *values) {
+  uint8_t frame[30];
+
+  frame[0] = 0xA5;
+  frame[1] = 0x5A;
+  frame[2] = frameSeq & 0xFF;
+  frame[3] = frameSeq >> 8;
+  memcpy(frame + 4, values, 24);   // AVR floats are little-endian
+
+  uint16_t crc = crc16(frame + 2, 26);
+  frame[28] = crc & 0xFF;
+  frame[29] = crc >> 8;
+
+  Serial.write(frame, 30);
+  frameSeq++;
+}
@@ -0,0 +1,219 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+// Drives several spectrometers side by side. Each device acquires on its own
+// executor thread, so acquisitions never queue behind one another. Frames from
+// all devices are merged into one stream ordered by their monotonic
+// (System.nanoTime) arrival timestamps.
+public class AcquisitionManager implements AutoCloseable {
+
+    public static class DeviceFrame {
+        public final int device;
+        public final String deviceName;
+        public final SpectrumFrame frame;
+
+        public DeviceFrame(int device, String deviceName, SpectrumFrame frame) {
+            this.device = device;
+            this.deviceName = deviceName;
+            this.frame = frame;
+        }
+    }
+
+    private final List<Spectrometer> devices = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+
+    // Time alignment: a frame is released once every device has reported a
+    // later frame, or once it is older than maxSkew
+    private static final long MAX_SKEW_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private final PriorityQueue<DeviceFrame> pending = new PriorityQueue<>(
+        Comparator.comparingLong(f -> f.frame.timestampNanos));
+    private final long[] lastSeen;
+
+    private final SubmissionPublisher<DeviceFrame> merged = new SubmissionPublisher<>();
+    private final ScheduledExecutorService flusher =
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "acquisition-merge");
+            t.setDaemon(true);
+            return t;
+        });
+
+    // ---------- CONSTRUCTOR ----------
+
+    // Opens all devices concurrently; if any fails, the others are closed again
+    public AcquisitionManager(List<Transport> transports) throws Exception {
+
+        List<CompletableFuture<Spectrometer>> opening = new ArrayList<>();
+        for (Transport t : transports) {
+            opening.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return new Spectrometer(t);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }));
+        }
+
+        Throwable failure = null;
+        for (CompletableFuture<Spectrometer> f : opening) {
+            try {
+                devices.add(f.join());
+            } catch (CompletionException e) {
+                if (failure == null) failure = e.getCause();
+            }
+        }
+        if (failure != null) {
+            devices.forEach(Spectrometer::close);
+            if (failure instanceof Error) throw (Error) failure;
+            throw (Exception) failure;
+        }
+
+        lastSeen = new long[devices.size()];
+        Arrays.fill(lastSeen, Long.MIN_VALUE);
+
+        for (int i = 0; i < devices.size(); i++) {
+            String name = devices.get(i).getPortName();
+            names.add(names.contains(name) ? name + "-" + (i + 1) : name);
+            devices.get(i).getFramePublisher().subscribe(new FrameSubscriber(i));
+        }
+
+        // Old frames are released every maxSkew even when a device stays silent
+        flusher.scheduleAtFixedRate(this::release,
+            MAX_SKEW_NANOS, MAX_SKEW_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    public static AcquisitionManager connectAll() throws Exception {
+        return new AcquisitionManager(new ArrayList<>(SerialTransport.connectAll()));
+    }
+
+    // ---------- CONFIGURATION ----------
+
+    public void configure(int integrationTime, int gain, int avg, String mode,
+                          int numberOfMeasurements, int lightInt) {
+        for (Spectrometer s : devices) {
+            s.configure(integrationTime, gain, avg, mode, numberOfMeasurements, lightInt);
+        }
+    }
+
+    // ---------- MEASUREMENT ----------
+
+    // Starts all devices at once; completes with one MeasurementSet per device name
+    public CompletableFuture<Map<String, MeasurementSet>> measureAll(String baseName) {
+
+        List<CompletableFuture<MeasurementSet>> runs = new ArrayList<>();
+        for (Spectrometer s : devices) {
+            runs.add(s.measureAsync(baseName));
+        }
+
+        return CompletableFuture.allOf(runs.toArray(new CompletableFuture<?>[0]))
+            .thenApply(done -> {
+                Map<String, MeasurementSet> result = new LinkedHashMap<>();
+                for (int i = 0; i < runs.size(); i++) {
+                    result.put(names.get(i), runs.get(i).join());
+                }
+                return result;
+            });
+    }
+
+    // If one device cannot start, the ones already streaming are stopped again
+    public void startStreams(int capacity, SpectrumRingBuffer.OverflowPolicy policy)
+            throws Exception {
+        try {
+            for (Spectrometer s : devices) {
+                s.startStream(capacity, policy);
+            }
+        } catch (Exception e) {
+            try {
+                stopStreams();
+            } catch (Exception stop) {
+                e.addSuppressed(stop);
+            }
+            throw e;
+        }
+    }
+
+    public void stopStreams() throws Exception {
+        for (Spectrometer s : devices) {
+            s.stopStream();
+        }
+        flush();
+    }
+
+    // ---------- MERGED STREAM ----------
+
+    public Flow.Publisher<DeviceFrame> getMergedStream() {
+        return merged;
+    }
+
+    private synchronized void onFrame(int device, SpectrumFrame frame) {
+        pending.add(new DeviceFrame(device, names.get(device), frame));
+        lastSeen[device] = Math.max(lastSeen[device], frame.timestampNanos);
+        release();
+    }
+
+    private synchronized void release() {
+        long watermark = Long.MAX_VALUE;
+        for (long t : lastSeen) {
+            watermark = Math.min(watermark, t);
+        }
+        watermark = Math.max(watermark, System.nanoTime() - MAX_SKEW_NANOS);
+
+        while (!pending.isEmpty() && pending.peek().frame.timestampNanos <= watermark) {
+            merged.offer(pending.poll(), (subscriber, f) -> false);
+        }
+    }
+
+    private synchronized void flush() {
+        while (!pending.isEmpty()) {
+            merged.offer(pending.poll(), (subscriber, f) -> false);
+        }
+    }
+
+    private class FrameSubscriber implements Flow.Subscriber<SpectrumFrame> {
+
+        private final int device;
+
+        FrameSubscriber(int device) {
+            this.device = device;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(SpectrumFrame frame) {
+            onFrame(device, frame);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {}
+
+        @Override
+        public void onComplete() {}
+    }
+
+    // ---------- ACCESS ----------
+
+    public List<String> getDeviceNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public Spectrometer getDevice(int index) {
+        return devices.get(index);
+    }
+
+    public int size() {
+        return devices.size();
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flush();
+        for (Spectrometer s : devices) {
+            s.close();
+        }
+        merged.close();
+    }
+}
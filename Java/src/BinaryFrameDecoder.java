@@ -0,0 +1,136 @@
+public class BinaryFrameDecoder {
+
+    // Frame layout (30 bytes, little-endian):
+    //   0..1   sync word 0xA5 0x5A
+    //   2..3   sequence number (uint16)
+    //   4..27  six float32 channel values
+    //   28..29 CRC16-CCITT over bytes 2..27
+    public static final int SYNC_0 = 0xA5;
+    public static final int SYNC_1 = 0x5A;
+    public static final int CHANNELS = 6;
+    public static final int FRAME_LENGTH = 4 + CHANNELS * 4 + 2;
+
+    // feed() results
+    public static final int SKIPPED = 0;   // byte is not part of a frame
+    public static final int CONSUMED = 1;  // byte belongs to a frame in progress
+    public static final int FRAME = 2;     // frame complete, values written to dst
+
+    private final byte[] frame = new byte[FRAME_LENGTH];
+    private int pos = 0;
+
+    private int sequence = -1;
+    private long framesLost = 0;
+    private long crcErrors = 0;
+
+    public int feed(byte b, double[] dst) {
+
+        if (pos == 0) {
+            if ((b & 0xFF) != SYNC_0) return SKIPPED;
+            frame[pos++] = b;
+            return CONSUMED;
+        }
+
+        if (pos == 1 && (b & 0xFF) != SYNC_1) {
+            pos = 0;
+            return feed(b, dst);
+        }
+
+        frame[pos++] = b;
+        if (pos < FRAME_LENGTH) return CONSUMED;
+
+        int expected = (frame[FRAME_LENGTH - 2] & 0xFF)
+                     | (frame[FRAME_LENGTH - 1] & 0xFF) << 8;
+        if (crc16(frame, 2, FRAME_LENGTH - 4) != expected) {
+            crcErrors++;
+            resync();
+            return CONSUMED;
+        }
+
+        int seq = (frame[2] & 0xFF) | (frame[3] & 0xFF) << 8;
+        if (sequence >= 0) {
+            framesLost += (seq - sequence - 1) & 0xFFFF;
+        }
+        sequence = seq;
+
+        for (int c = 0; c < CHANNELS; c++) {
+            dst[c] = Float.intBitsToFloat(readInt(4 + c * 4));
+        }
+
+        pos = 0;
+        return FRAME;
+    }
+
+    // True while a frame has been started but not completed
+    public boolean isInFrame() {
+        return pos > 0;
+    }
+
+    public void reset() {
+        pos = 0;
+        sequence = -1;
+    }
+
+    // Drop the bad sync word and restart from the next candidate inside the buffer
+    private void resync() {
+        int k = 1;
+        while (k < pos) {
+            if ((frame[k] & 0xFF) == SYNC_0 &&
+                (k + 1 == pos || (frame[k + 1] & 0xFF) == SYNC_1)) {
+                break;
+            }
+            k++;
+        }
+        System.arraycopy(frame, k, frame, 0, pos - k);
+        pos -= k;
+    }
+
+    private int readInt(int offset) {
+        return (frame[offset] & 0xFF)
+             | (frame[offset + 1] & 0xFF) << 8
+             | (frame[offset + 2] & 0xFF) << 16
+             | (frame[offset + 3] & 0xFF) << 24;
+    }
+
+    // Inverse of feed(), used by the simulated device
+    public static void encode(int seq, double[] values, byte[] dst) {
+        dst[0] = (byte) SYNC_0;
+        dst[1] = (byte) SYNC_1;
+        dst[2] = (byte) seq;
+        dst[3] = (byte) (seq >> 8);
+        for (int c = 0; c < CHANNELS; c++) {
+            int bits = Float.floatToIntBits((float) values[c]);
+            for (int k = 0; k < 4; k++) {
+                dst[4 + c * 4 + k] = (byte) (bits >> (8 * k));
+            }
+        }
+        int crc = crc16(dst, 2, FRAME_LENGTH - 4);
+        dst[FRAME_LENGTH - 2] = (byte) crc;
+        dst[FRAME_LENGTH - 1] = (byte) (crc >> 8);
+    }
+
+    // CRC16-CCITT (poly 0x1021, init 0xFFFF), same as the firmware
+    public static int crc16(byte[] data, int offset, int length) {
+        int crc = 0xFFFF;
+        for (int i = offset; i < offset + length; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc & 0xFFFF;
+    }
+
+    // ---------- STATISTICS ----------
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public long getFramesLost() {
+        return framesLost;
+    }
+
+    public long getCrcErrors() {
+        return crcErrors;
+    }
+}
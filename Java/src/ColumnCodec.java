@@ -0,0 +1,249 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// Lossless compression of one column of a long recording, encoded and decoded
+// one value at a time. Consecutive readings of a sample differ little, so:
+//   timestamps  delta of delta, zigzag varint (a steady frame rate costs 1 byte)
+//   values      fixed point when every value has at most MAX_DECIMALS decimals
+//               (CSV frames are printed with 3): row-to-row delta, zigzag varint;
+//               otherwise XOR with the previous value (Gorilla), which suits
+//               float32 frames widened to double
+// A value column starts with one mode byte, fixed point also with its decimals.
+public class ColumnCodec {
+
+    public static final int MODE_XOR = 0;
+    public static final int MODE_FIXED = 1;
+
+    private static final int MAX_DECIMALS = 6;
+    private static final double MAX_FIXED = 1L << 52;
+
+    // Smallest number of decimals that represents every value exactly, -1 if none does
+    public static int fixedPointDecimals(MeasurementSet.Column column) {
+        for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+            double scale = Math.pow(10, decimals);
+            boolean exact = true;
+            for (int r = 0; r < column.size() && exact; r++) {
+                double v = column.get(r);
+                double scaled = Math.rint(v * scale);
+                exact = Math.abs(scaled) < MAX_FIXED && scaled / scale == v
+                     && Double.doubleToRawLongBits(v) != Double.doubleToRawLongBits(-0.0);
+            }
+            if (exact) return decimals;
+        }
+        return -1;
+    }
+
+    // ---------- ENCODE ----------
+
+    public static void encodeTimestamps(long[] timestamps, int size, OutputStream out)
+            throws IOException {
+        long previous = 0;
+        long previousDelta = 0;
+        for (int r = 0; r < size; r++) {
+            long delta = timestamps[r] - previous;
+            writeVarLong(out, zigzag(delta - previousDelta));
+            previousDelta = delta;
+            previous = timestamps[r];
+        }
+    }
+
+    public static void encodeColumn(MeasurementSet.Column column, OutputStream out)
+            throws IOException {
+
+        int decimals = fixedPointDecimals(column);
+        if (decimals >= 0) {
+            out.write(MODE_FIXED);
+            out.write(decimals);
+            double scale = Math.pow(10, decimals);
+            long previous = 0;
+            for (int r = 0; r < column.size(); r++) {
+                long fixed = (long) Math.rint(column.get(r) * scale);
+                writeVarLong(out, zigzag(fixed - previous));
+                previous = fixed;
+            }
+            return;
+        }
+
+        out.write(MODE_XOR);
+        BitWriter bits = new BitWriter(out);
+        long previous = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+
+        for (int r = 0; r < column.size(); r++) {
+            long value = Double.doubleToRawLongBits(column.get(r));
+            long xor = value ^ previous;
+            previous = value;
+
+            if (r == 0) {
+                bits.write(value, 64);
+            } else if (xor == 0) {
+                bits.write(0, 1);
+            } else {
+                int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+                int trailing = Long.numberOfTrailingZeros(xor);
+
+                if (previousLeading >= 0 && leading >= previousLeading
+                        && trailing >= previousTrailing) {
+                    // Fits the previous window: control bits 10
+                    int length = 64 - previousLeading - previousTrailing;
+                    bits.write(0b10, 2);
+                    bits.write(xor >>> previousTrailing, length);
+                } else {
+                    // New window: control bits 11, 5 bits leading zeros, 6 bits length
+                    int length = 64 - leading - trailing;
+                    bits.write(0b11, 2);
+                    bits.write(leading, 5);
+                    bits.write(length & 63, 6);    // 64 is stored as 0
+                    bits.write(xor >>> trailing, length);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+        }
+        bits.flush();
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static void writeVarLong(OutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    // ---------- DECODE ----------
+
+    public static class TimestampDecoder {
+        private final ByteBuffer in;
+        private long previous = 0;
+        private long previousDelta = 0;
+
+        public TimestampDecoder(ByteBuffer in) {
+            this.in = in;
+        }
+
+        public long next() {
+            long delta = previousDelta + unzigzag(readVarLong(in));
+            previousDelta = delta;
+            previous += delta;
+            return previous;
+        }
+    }
+
+    public static class ValueDecoder {
+        private final ByteBuffer in;
+        private final int mode;
+        private final double scale;
+
+        private long previous = 0;
+        private boolean first = true;
+        private int leading = 0;
+        private int trailing = 0;
+
+        // Bit reader state for XOR mode
+        private long word = 0;
+        private int available = 0;
+
+        public ValueDecoder(ByteBuffer in) {
+            this.in = in;
+            this.mode = in.get();
+            this.scale = mode == MODE_FIXED ? Math.pow(10, in.get()) : 1;
+        }
+
+        public double next() {
+            if (mode == MODE_FIXED) {
+                previous += unzigzag(readVarLong(in));
+                return previous / scale;
+            }
+
+            if (first) {
+                first = false;
+                previous = readBits(64);
+            } else if (readBits(1) != 0) {
+                if (readBits(1) != 0) {
+                    leading = (int) readBits(5);
+                    int length = (int) readBits(6);
+                    if (length == 0) length = 64;
+                    trailing = 64 - leading - length;
+                }
+                int length = 64 - leading - trailing;
+                previous ^= readBits(length) << trailing;
+            }
+            return Double.longBitsToDouble(previous);
+        }
+
+        private long readBits(int count) {
+            long result = 0;
+            while (count > 0) {
+                if (available == 0) {
+                    word = in.get() & 0xFF;
+                    available = 8;
+                }
+                int take = Math.min(count, available);
+                long chunk = (word >>> (available - take)) & ((1L << take) - 1);
+                result = (result << take) | chunk;
+                available -= take;
+                count -= take;
+            }
+            return result;
+        }
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    // ---------- HELPER CLASS ----------
+
+    // Most significant bit first
+    private static class BitWriter {
+        private final OutputStream out;
+        private int current = 0;
+        private int used = 0;
+
+        BitWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(long value, int count) throws IOException {
+            while (count > 0) {
+                int take = Math.min(count, 8 - used);
+                int chunk = (int) ((value >>> (count - take)) & ((1 << take) - 1));
+                current = (current << take) | chunk;
+                used += take;
+                count -= take;
+                if (used == 8) {
+                    out.write(current);
+                    current = 0;
+                    used = 0;
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            if (used > 0) {
+                out.write(current << (8 - used));
+                current = 0;
+                used = 0;
+            }
+        }
+    }
+}
@@ -11,6 +11,8 @@ public class ConfigureDialog extends JDialog {
     private JTextField avgField;
     private JTextField countField;
     private JSpinner lightSpinner;
+    private JSpinner depthSpinner;
+    private JSpinner exposureSpinner;
 
     private JComboBox<Integer> gainBox;
     private JComboBox<String> modeBox;
@@ -21,7 +23,7 @@ public class ConfigureDialog extends JDialog {
                            Map<String, Object> currentParams) {
 
         super(parent, "Configure Measurement", true);
-        setSize(360, 300);
+        setSize(360, 380);
         setLocationRelativeTo(parent);
         setLayout(new BorderLayout());
 
@@ -33,7 +35,7 @@ public class ConfigureDialog extends JDialog {
 
     private JPanel createFormPanel(Map<String, Object> params) {
 
-        JPanel panel = new JPanel(new GridLayout(6, 2, 8, 8));
+        JPanel panel = new JPanel(new GridLayout(8, 2, 8, 8));
         panel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
 
         intField = new JTextField(value(params, "int", "50"));
@@ -54,6 +56,14 @@ public class ConfigureDialog extends JDialog {
         lightSpinner = new JSpinner(lightModel);
         lightSpinner.setPreferredSize(new Dimension(80, 25));  // nice width
 
+        // Reads queued on the device before the first reply is awaited (1..16)
+        depthSpinner = new JSpinner(new SpinnerNumberModel(
+            Integer.parseInt(value(params, "depth", "1")), 1, 16, 1));
+
+        // Peak aimed at by Auto Exposure, in % of full scale (5..95)
+        exposureSpinner = new JSpinner(new SpinnerNumberModel(
+            Integer.parseInt(value(params, "exposure", "70")), 5, 95, 5));
+
         panel.add(new JLabel("Integration time (ms):"));
         panel.add(intField);
 
@@ -72,6 +82,12 @@ public class ConfigureDialog extends JDialog {
         panel.add(new JLabel("Light intensity (0-100):"));
         panel.add(lightSpinner);
 
+        panel.add(new JLabel("Reads in flight:"));
+        panel.add(depthSpinner);
+
+        panel.add(new JLabel("Auto exposure target (%):"));
+        panel.add(exposureSpinner);
+
         return panel;
     }
 
@@ -116,6 +132,8 @@ public class ConfigureDialog extends JDialog {
         params.put("count", Integer.parseInt(countField.getText()));
         params.put("mode", modeBox.getSelectedItem().toString());
         params.put("light", lightSpinner.getValue());
+        params.put("depth", depthSpinner.getValue());
+        params.put("exposure", exposureSpinner.getValue());
 
         return params;
     }
@@ -0,0 +1,141 @@
+import java.nio.charset.StandardCharsets;
+
+// Decodes "v,v,v,v,v,v" lines straight from raw bytes without creating Strings
+// or arrays. Plain decimals as the firmware prints them (e.g. -12.345) take the
+// allocation-free path; nan/inf/ovf and wrong field counts are rejected just
+// like the old split()/parseDouble() code did. Pipelined replies carry a
+// "#<seq> " prefix echoing the sequence id of the read command.
+public class CsvFrameParser {
+
+    public static final int CHANNELS = 6;
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22
+    };
+
+    private final double[] values = new double[CHANNELS];
+    private int sequence = -1;
+
+    // Parses one line (without the newline) into dst[dstOffset ...]; dst is left untouched on failure
+    public boolean parse(byte[] line, int offset, int length, double[] dst, int dstOffset) {
+
+        int end = offset + length;
+        int pos = offset;
+
+        sequence = -1;
+        if (pos < end && line[pos] == '#') {
+            int seq = 0;
+            int digits = 0;
+            for (pos++; pos < end && line[pos] >= '0' && line[pos] <= '9'; pos++) {
+                seq = seq * 10 + (line[pos] - '0');
+                if (++digits > 9) return false;
+            }
+            if (digits == 0 || pos == end || line[pos] != ' ') return false;
+            sequence = seq;
+            pos++;
+        }
+
+        for (int field = 0; field < CHANNELS; field++) {
+            if (pos > end) return false;
+
+            int fieldEnd = pos;
+            while (fieldEnd < end && line[fieldEnd] != ',') fieldEnd++;
+
+            if (!parseField(line, pos, fieldEnd, field)) return false;
+            pos = fieldEnd + 1;
+        }
+
+        // Only trailing separators/blanks may follow the sixth value
+        for (int i = pos - 1; i < end; i++) {
+            byte b = line[i];
+            if (b != ',' && !isBlank(b)) return false;
+        }
+
+        System.arraycopy(values, 0, dst, dstOffset, CHANNELS);
+        return true;
+    }
+
+    public boolean parse(byte[] line, int offset, int length, double[] dst) {
+        return parse(line, offset, length, dst, 0);
+    }
+
+    private boolean parseField(byte[] buf, int start, int end, int index) {
+
+        while (start < end && isBlank(buf[start])) start++;
+        while (end > start && isBlank(buf[end - 1])) end--;
+        if (start == end) return false;
+
+        int pos = start;
+        boolean negative = false;
+        if (buf[pos] == '-' || buf[pos] == '+') {
+            negative = buf[pos] == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int exp10 = 0;
+        int digits = 0;
+        boolean seenDot = false;
+
+        for (; pos < end; pos++) {
+            byte b = buf[pos];
+            if (b >= '0' && b <= '9') {
+                if (mantissa < 100_000_000_000_000_000L) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (seenDot) exp10--;
+                } else if (!seenDot) {
+                    exp10++;   // digits beyond long precision only scale
+                }
+                digits++;
+            } else if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) return false;
+
+        if (pos < end && (buf[pos] == 'e' || buf[pos] == 'E')) {
+            pos++;
+            boolean expNegative = false;
+            if (pos < end && (buf[pos] == '-' || buf[pos] == '+')) {
+                expNegative = buf[pos] == '-';
+                pos++;
+            }
+            if (pos == end) return false;
+
+            int exp = 0;
+            for (; pos < end; pos++) {
+                byte b = buf[pos];
+                if (b < '0' || b > '9') return false;
+                if (exp < 10_000) exp = exp * 10 + (b - '0');
+            }
+            exp10 += expNegative ? -exp : exp;
+        }
+        if (pos != end) return false;
+
+        if (mantissa >= (1L << 53) || exp10 < -22 || exp10 > 22) {
+            // Outside the exact fast path; the firmware never prints such values
+            values[index] = Double.parseDouble(
+                new String(buf, start, end - start, StandardCharsets.US_ASCII));
+            return true;
+        }
+
+        // Both operands are exact doubles, so one rounding, same as parseDouble
+        double value = exp10 < 0 ? mantissa / POW10[-exp10] : mantissa * POW10[exp10];
+
+        values[index] = negative ? -value : value;
+        return true;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    // Sequence id of the last parsed line, -1 if it had none
+    public int getSequence() {
+        return sequence;
+    }
+}
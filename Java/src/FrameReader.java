@@ -0,0 +1,165 @@
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class FrameReader implements Transport.Receiver {
+
+    private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+    private final byte[] lineBuffer = new byte[256];
+    private int lineLength = 0;
+    private boolean lineOverflow = false;
+    private long corruptLines = 0;        // CSV data lines that did not parse
+
+    // Decoded frames of either protocol go straight into a lock-free primitive
+    // ring; the receive thread never waits for whoever consumes them
+    private final CsvFrameParser csvParser = new CsvFrameParser();
+    private final BinaryFrameDecoder decoder = new BinaryFrameDecoder();
+    private final SpscFrameRing frames = new SpscFrameRing(1024, BinaryFrameDecoder.CHANNELS);
+    private final double[] decoded = new double[BinaryFrameDecoder.CHANNELS];
+    private volatile boolean binary = false;
+
+    // Receive timestamps (System.nanoTime) of the frame being assembled
+    private volatile FrameTimings timings;
+    private long lineFirstByte;
+    private long frameFirstByte;
+    private long frameComplete;
+
+    // ---------- RECEIVE ----------
+
+    // Split incoming bytes into frames and text lines; called from the transport's receive thread.
+    // CSV data lines are decoded in place, only other lines (READY, STOPPED, ...) become Strings.
+    // In binary mode, bytes outside a frame are still collected as text lines.
+    @Override
+    public synchronized void onData(byte[] data, int length) {
+        long now = System.nanoTime();
+
+        for (int i = 0; i < length; i++) {
+            byte b = data[i];
+
+            if (binary) {
+                if (!decoder.isInFrame()) frameFirstByte = now;
+
+                int result = decoder.feed(b, decoded);
+                if (result == BinaryFrameDecoder.FRAME) {
+                    frameComplete = now;
+                    storeFrame(decoder.getSequence());
+                    continue;
+                }
+                if (result == BinaryFrameDecoder.CONSUMED) continue;
+            }
+
+            if (b == '\n') {
+                completeLine();
+            } else if (b != '\r') {
+                if (lineLength == 0) lineFirstByte = now;
+                if (lineLength < lineBuffer.length) {
+                    lineBuffer[lineLength++] = b;
+                } else {
+                    lineOverflow = true;
+                }
+            }
+        }
+    }
+
+    private void completeLine() {
+        if (!lineOverflow) {
+            frameFirstByte = lineFirstByte;
+            frameComplete = System.nanoTime();
+            if (!binary && csvParser.parse(lineBuffer, 0, lineLength, decoded)) {
+                storeFrame(csvParser.getSequence());
+            } else if (!containsComma()) {
+                lines.offer(new String(lineBuffer, 0, lineLength).trim());
+            } else {
+                corruptLines++;
+            }
+        }
+        lineLength = 0;
+        lineOverflow = false;
+    }
+
+    private boolean containsComma() {
+        for (int i = 0; i < lineLength; i++) {
+            if (lineBuffer[i] == ',') return true;
+        }
+        return false;
+    }
+
+    private void storeFrame(int sequence) {
+        long decodedAt = System.nanoTime();
+
+        FrameTimings t = timings;
+        if (t != null) {
+            t.frameDecoded(frameFirstByte, frameComplete, decodedAt);
+        }
+        frames.offer(decoded, decodedAt, frameFirstByte, sequence);
+    }
+
+    // ---------- ACCESS ----------
+
+    // Returns the next complete line, or null if none arrived within the timeout
+    public String nextLine(long timeoutMs) throws InterruptedException {
+        return lines.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Frames have a single consumer at a time: the acquisition or the stream pump
+
+    // Copies the next frame into dst; returns false if none arrived within the timeout
+    public boolean nextFrame(double[] dst, long timeoutMs) throws InterruptedException {
+        return frames.poll(dst, timeoutMs);
+    }
+
+    // Hands up to maxFrames waiting frames to the handler in one batch
+    public int drainFrames(SpscFrameRing.FrameHandler handler, int maxFrames, long timeoutMs)
+            throws InterruptedException {
+        return frames.drain(handler, maxFrames, timeoutMs);
+    }
+
+    // Arrival time (System.nanoTime) of the frame last returned by nextFrame()
+    public long getFrameTimestamp() {
+        return frames.getLastTimestamp();
+    }
+
+    // When the first byte of the frame last returned by nextFrame() arrived
+    public long getFrameFirstByte() {
+        return frames.getLastFirstByte();
+    }
+
+    // Sequence id of the frame last returned by nextFrame(), -1 if it had none
+    public int getFrameSequence() {
+        return frames.getLastSequence();
+    }
+
+    // Frames decoded while the ring was full because nobody consumed them
+    public long getDroppedFrames() {
+        return frames.getDropped();
+    }
+
+    // Frames damaged on the link: binary CRC errors and garbled CSV data lines
+    public synchronized long getCorruptFrames() {
+        return decoder.getCrcErrors() + corruptLines;
+    }
+
+    // Binary frames missing from the device's sequence
+    public synchronized long getLostFrames() {
+        return decoder.getFramesLost();
+    }
+
+    public synchronized void setBinary(boolean binary) {
+        decoder.reset();
+        this.binary = binary;
+    }
+
+    public void setTimings(FrameTimings timings) {
+        this.timings = timings;
+    }
+
+    public synchronized void clear() {
+        lines.clear();
+        lineLength = 0;
+        lineOverflow = false;
+
+        // Consumer side only: skip every frame stored so far
+        frames.skipAll();
+    }
+}
@@ -0,0 +1,134 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Where the time of every frame goes, split at the points we can observe:
+//   command sent -> first byte -> frame complete -> decoded
+// FrameReader records the receive side, Spectrometer the command side.
+// Registered as spectrometer:type=FrameTimings,port=<port> for JConsole/VisualVM.
+public class FrameTimings implements FrameTimingsMBean {
+
+    // Frame rate is taken over the last RATE_WINDOW accepted frames
+    private static final int RATE_WINDOW = 64;
+    private static final long RATE_STALE_NANOS = 2_000_000_000L;
+
+    private final LatencyHistogram device = new LatencyHistogram();
+    private final LatencyHistogram transfer = new LatencyHistogram();
+    private final LatencyHistogram parse = new LatencyHistogram();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final AtomicLongArray acceptTimes = new AtomicLongArray(RATE_WINDOW);
+    private final AtomicLong frames = new AtomicLong();
+
+    private ObjectName name;
+
+    // ---------- RECORDING ----------
+
+    // Receive thread: one decoded frame
+    public void frameDecoded(long firstByteNanos, long completeNanos, long decodedNanos) {
+        transfer.record(completeNanos - firstByteNanos);
+        parse.record(decodedNanos - completeNanos);
+    }
+
+    // Acquisition thread: reply to a command sent at sentNanos
+    public void commandCompleted(long sentNanos, long firstByteNanos, long decodedNanos) {
+        device.record(firstByteNanos - sentNanos);
+        latency.record(decodedNanos - sentNanos);
+    }
+
+    // Any frame handed to the application, measured or streamed
+    public void frameAccepted(long nanos) {
+        long n = frames.getAndIncrement();
+        acceptTimes.set((int) (n % RATE_WINDOW), nanos);
+    }
+
+    // ---------- MBEAN ----------
+
+    @Override
+    public double getFramesPerSecond() {
+        long n = frames.get();
+        if (n < 2) return 0;
+
+        long newest = acceptTimes.get((int) ((n - 1) % RATE_WINDOW));
+        if (System.nanoTime() - newest > RATE_STALE_NANOS) return 0;
+
+        int window = (int) Math.min(n, RATE_WINDOW);
+        long oldest = acceptTimes.get((int) ((n - window) % RATE_WINDOW));
+        if (newest <= oldest) return 0;
+        return (window - 1) * 1e9 / (newest - oldest);
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frames.get();
+    }
+
+    @Override
+    public double getLatencyMeanMicros() {
+        return latency.getMean() / 1000;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return latency.getPercentile(50) / 1000;
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return latency.getPercentile(99) / 1000;
+    }
+
+    @Override
+    public long getLatencyMaxMicros() {
+        return latency.getMax() / 1000;
+    }
+
+    @Override
+    public long getDeviceP99Micros() {
+        return device.getPercentile(99) / 1000;
+    }
+
+    @Override
+    public long getTransferP99Micros() {
+        return transfer.getPercentile(99) / 1000;
+    }
+
+    @Override
+    public long getParseP99Micros() {
+        return parse.getPercentile(99) / 1000;
+    }
+
+    @Override
+    public void reset() {
+        device.reset();
+        transfer.reset();
+        parse.reset();
+        latency.reset();
+    }
+
+    // ---------- JMX ----------
+
+    public void register(String port) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName candidate = new ObjectName(
+                "spectrometer:type=FrameTimings,port=" + ObjectName.quote(port));
+            server.registerMBean(this, candidate);
+            name = candidate;
+        } catch (Exception e) {
+            System.err.println("FrameTimings not registered for " + port + ": " + e.getMessage());
+        }
+    }
+
+    public void unregister() {
+        if (name == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (Exception e) {
+            System.err.println("FrameTimings unregister failed: " + e.getMessage());
+        }
+        name = null;
+    }
+}
@@ -0,0 +1,27 @@
+// Management view of FrameTimings; times are in microseconds
+public interface FrameTimingsMBean {
+
+    double getFramesPerSecond();
+
+    long getFrameCount();
+
+    // Command sent -> frame decoded, read commands and triggers only
+    double getLatencyMeanMicros();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP99Micros();
+
+    long getLatencyMaxMicros();
+
+    // Command sent -> first reply byte (integration and averaging on the device)
+    long getDeviceP99Micros();
+
+    // First reply byte -> frame complete (serial transfer, USB latency)
+    long getTransferP99Micros();
+
+    // Frame complete -> values decoded
+    long getParseP99Micros();
+
+    void reset();
+}
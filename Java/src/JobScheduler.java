@@ -0,0 +1,279 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Runs a plan of measurements (dark, reference, samples, ...) back to back on a
+// background thread without operator clicks. The plan lives in a text file next
+// to its results and is rewritten after every job, so after a crash loading the
+// same file continues with the first job that is not done:
+//
+//   # MeasurementPlan
+//   [job]
+//   type=dark
+//   name=Dark
+//   delayMs=0
+//   integrationTime=50
+//   gain=16
+//   avg=1
+//   mode=cal
+//   numberOfMeasurements=10
+//   lightInt=0
+//   status=done
+//   result=Dark_2026-01-04_14-32-18.txt
+//
+// Keys below delayMs are the Spectrometer.configure() parameters, missing ones
+// keep the current configuration. Results are saved into the plan's directory.
+public class JobScheduler {
+
+    public enum Type { DARK, REFERENCE, SAMPLE }
+
+    public enum Status { PENDING, DONE, FAILED }
+
+    public interface Listener {
+        void onJobStarted(Job job, int index, int total);
+
+        void onJobDone(Job job, MeasurementSet result);
+
+        void onJobFailed(Job job, Throwable error);
+    }
+
+    private final Spectrometer spectrometer;
+    private final File planFile;
+    private final List<Job> jobs = new ArrayList<>();
+    private Listener listener;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "measurement-jobs");
+        t.setDaemon(true);
+        return t;
+    });
+    private Future<?> running;
+
+    public JobScheduler(Spectrometer spectrometer, File planFile) {
+        this.spectrometer = spectrometer;
+        this.planFile = planFile;
+    }
+
+    // ---------- PLAN ----------
+
+    public synchronized void addJob(Job job) throws IOException {
+        jobs.add(job);
+        savePlan();
+    }
+
+    public synchronized List<Job> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // Opens an existing plan; jobs marked done are skipped when it runs
+    public static JobScheduler load(Spectrometer spectrometer, File planFile) throws IOException {
+
+        JobScheduler scheduler = new JobScheduler(spectrometer, planFile);
+
+        try (BufferedReader br = new BufferedReader(new FileReader(planFile))) {
+            String line;
+            Job job = null;
+
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                if (line.equals("[job]")) {
+                    job = new Job(Type.SAMPLE, "Sample");
+                    scheduler.jobs.add(job);
+                    continue;
+                }
+
+                String[] parts = line.split("=", 2);
+                if (job == null || parts.length != 2) continue;
+
+                String key = parts[0].trim();
+                String value = parts[1].trim();
+                switch (key) {
+                    case "type":    job.type = Type.valueOf(value.toUpperCase()); break;
+                    case "name":    job.name = value; break;
+                    case "delayMs": job.delayMs = Long.parseLong(value); break;
+                    case "status":  job.status = Status.valueOf(value.toUpperCase()); break;
+                    case "result":  job.result = value; break;
+                    case "error":   job.error = value; break;
+                    default:        job.params.put(key, value); break;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    // Written to a temporary file and moved over the plan, so a crash never
+    // leaves a half-written plan behind
+    private synchronized void savePlan() throws IOException {
+
+        File tmp = new File(planFile.getPath() + ".tmp");
+        try (PrintWriter pw = new PrintWriter(new FileWriter(tmp))) {
+            pw.println("# MeasurementPlan");
+            for (Job job : jobs) {
+                pw.println();
+                pw.println("[job]");
+                pw.println("type=" + job.type.name().toLowerCase());
+                pw.println("name=" + job.name);
+                pw.println("delayMs=" + job.delayMs);
+                for (Map.Entry<String, Object> e : job.params.entrySet()) {
+                    pw.println(e.getKey() + "=" + e.getValue());
+                }
+                pw.println("status=" + job.status.name().toLowerCase());
+                if (job.result != null) pw.println("result=" + job.result);
+                if (job.error != null) pw.println("error=" + job.error.replace('\n', ' '));
+            }
+        }
+        Files.move(tmp.toPath(), planFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Saved results of jobs already done, e.g. when resuming a plan
+    public synchronized Map<String, MeasurementSet> loadCompletedResults() throws IOException {
+        Map<String, MeasurementSet> results = new LinkedHashMap<>();
+        for (Job job : jobs) {
+            if (job.status != Status.DONE || job.result == null) continue;
+            MeasurementSet set = MeasurementSet.loadFromFile(resultFile(job.result).getPath());
+            results.put(set.getName(), set);
+        }
+        return results;
+    }
+
+    private File resultFile(String name) {
+        File dir = planFile.getAbsoluteFile().getParentFile();
+        return new File(dir, name);
+    }
+
+    // ---------- EXECUTION ----------
+
+    // Runs every job that is not done yet, in plan order. Stops at the first
+    // failure; the failed job is retried when the plan is run again.
+    public synchronized CompletableFuture<Void> start() {
+
+        if (running != null && !running.isDone()) {
+            throw new IllegalStateException("Plan is already running");
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        running = executor.submit(() -> {
+            try {
+                runPending();
+                result.complete(null);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    public synchronized void cancel() {
+        if (running != null) {
+            running.cancel(true);
+        }
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void runPending() throws Exception {
+
+        List<Job> plan = getJobs();
+        for (int i = 0; i < plan.size(); i++) {
+            Job job = plan.get(i);
+            if (job.status == Status.DONE) continue;
+
+            if (listener != null) listener.onJobStarted(job, i, plan.size());
+
+            try {
+                MeasurementSet set = runJob(job);
+
+                String fileName = set.getName() + ".txt";
+                set.saveToFile(resultFile(fileName).getPath());
+
+                job.status = Status.DONE;
+                job.result = fileName;
+                job.error = null;
+                savePlan();
+
+                if (listener != null) listener.onJobDone(job, set);
+
+            } catch (InterruptedException e) {
+                // Cancelled: the job stays pending
+                throw e;
+            } catch (Exception e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                job.status = Status.FAILED;
+                job.error = String.valueOf(cause.getMessage());
+                savePlan();
+
+                if (listener != null) listener.onJobFailed(job, cause);
+                throw e;
+            }
+        }
+    }
+
+    private MeasurementSet runJob(Job job) throws Exception {
+
+        if (job.delayMs > 0) {
+            Thread.sleep(job.delayMs);
+        }
+
+        Map<String, Object> current = spectrometer.getParameters();
+        spectrometer.configure(
+            intParam(job, current, "integrationTime"),
+            intParam(job, current, "gain"),
+            intParam(job, current, "avg"),
+            String.valueOf(job.params.getOrDefault("mode", current.get("mode"))),
+            intParam(job, current, "numberOfMeasurements"),
+            job.type == Type.DARK ? 0 : intParam(job, current, "lightInt")
+        );
+
+        CompletableFuture<MeasurementSet> measurement = spectrometer.measureAsync(job.name);
+        try {
+            return measurement.get();
+        } catch (InterruptedException e) {
+            measurement.cancel(true);
+            throw e;
+        }
+    }
+
+    private static int intParam(Job job, Map<String, Object> current, String key) {
+        Object value = job.params.getOrDefault(key, current.get(key));
+        return Integer.parseInt(String.valueOf(value).trim());
+    }
+
+    // ---------- HELPER CLASS ----------
+
+    public static class Job {
+        public Type type;
+        public String name;
+        public long delayMs = 0;     // wait before this job, e.g. for a sample change
+        public final Map<String, Object> params = new LinkedHashMap<>();   // configure() keys
+
+        public Status status = Status.PENDING;
+        public String result;        // result file, relative to the plan
+        public String error;
+
+        public Job(Type type, String name) {
+            this.type = type;
+            this.name = name;
+        }
+
+        public Job withDelay(long delayMs) {
+            this.delayMs = delayMs;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return type.name().toLowerCase() + " " + name + " (" + status.name().toLowerCase() + ")";
+        }
+    }
+}
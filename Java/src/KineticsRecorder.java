@@ -0,0 +1,215 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+// Absorbance-vs-time recording from the spectrometer stream. Every frame is
+// turned into per-channel absorbance against a fixed reference (minus an
+// optional dark) as it arrives. Memory stays constant for any run length:
+// points live in preallocated columns, and when those fill up neighbouring
+// points are merged pairwise, so the whole run stays covered at half the
+// time resolution. Live views read a decimated copy via getSeries().
+public class KineticsRecorder implements AutoCloseable {
+
+    private final int channels;
+    private final double[] reference;   // reference mean minus dark
+    private final double[] dark;
+
+    // Columns: times[i] in seconds since the first frame, absorbance[c][i]
+    private final int capacity;
+    private final double[] times;
+    private final float[][] absorbance;
+    private int size = 0;
+    private int framesPerPoint = 1;
+
+    // Point being collected
+    private final double[] binSum;
+    private double binTime = 0;
+    private int binFrames = 0;
+
+    private long startNanos = -1;
+    private long frames = 0;
+
+    private Spectrometer spectrometer;
+    private SpectrumRingBuffer.Cursor cursor;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    public KineticsRecorder(MeasurementSet reference, MeasurementSet dark, int capacity) {
+
+        double[] ref = reference.getAverageAndStd().mean;
+        this.channels = ref.length;
+        this.dark = dark != null ? dark.getAverageAndStd().mean : new double[channels];
+        this.reference = new double[channels];
+        for (int c = 0; c < channels; c++) {
+            this.reference[c] = ref[c] - this.dark[c];
+        }
+
+        // Even, so a full column halves exactly
+        this.capacity = Math.max(2, capacity & ~1);
+        this.times = new double[this.capacity];
+        this.absorbance = new float[channels][this.capacity];
+        this.binSum = new double[channels];
+    }
+
+    public KineticsRecorder(MeasurementSet reference, int capacity) {
+        this(reference, null, capacity);
+    }
+
+    // ---------- RECORDING ----------
+
+    // Streams from the spectrometer on a recorder thread until stop()
+    public synchronized void start(Spectrometer spectrometer) throws IOException {
+        if (running) {
+            throw new IllegalStateException("Recording is already running");
+        }
+
+        SpectrumRingBuffer buffer = spectrometer.startStream(
+            4096, SpectrumRingBuffer.OverflowPolicy.OVERWRITE);
+        this.spectrometer = spectrometer;
+        this.cursor = buffer.subscribe();
+
+        running = true;
+        thread = new Thread(this::record, "kinetics-recorder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void record() {
+        double[] frame = new double[channels];
+        try {
+            while (running) {
+                if (cursor.next(frame, 100)) {
+                    add(cursor.getLastTimestamp(), frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void stop() throws IOException, InterruptedException {
+        if (!running) return;
+
+        running = false;
+        thread.join();
+        cursor.close();
+        spectrometer.stopStream();
+    }
+
+    // As stop(), but an interrupt while waiting for the recorder thread is
+    // passed on to the caller's thread instead of thrown
+    @Override
+    public void close() throws IOException {
+        try {
+            stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // One frame of raw intensities; can also be fed directly, e.g. from a file
+    public synchronized void add(long timestampNanos, double[] intensities) {
+
+        if (startNanos < 0) startNanos = timestampNanos;
+        frames++;
+
+        for (int c = 0; c < channels; c++) {
+            double signal = intensities[c] - dark[c];
+            binSum[c] += signal > 0 && reference[c] > 0
+                ? -Math.log10(signal / reference[c])
+                : Double.NaN;
+        }
+        binTime += (timestampNanos - startNanos) / 1e9;
+
+        if (++binFrames < framesPerPoint) return;
+
+        times[size] = binTime / binFrames;
+        for (int c = 0; c < channels; c++) {
+            absorbance[c][size] = (float) (binSum[c] / binFrames);
+            binSum[c] = 0;
+        }
+        binTime = 0;
+        binFrames = 0;
+
+        if (++size == capacity) {
+            compact();
+        }
+    }
+
+    // Merges neighbouring points; later points then average twice as many frames
+    private void compact() {
+        int half = size / 2;
+        for (int i = 0; i < half; i++) {
+            times[i] = (times[2 * i] + times[2 * i + 1]) / 2;
+            for (int c = 0; c < channels; c++) {
+                absorbance[c][i] = (absorbance[c][2 * i] + absorbance[c][2 * i + 1]) / 2;
+            }
+        }
+        size = half;
+        framesPerPoint *= 2;
+    }
+
+    // ---------- ACCESS ----------
+
+    // At most maxPoints points of one channel, averaged over equal index ranges
+    public synchronized Series getSeries(int channel, int maxPoints) {
+
+        int points = Math.min(size, Math.max(1, maxPoints));
+        double[] t = new double[points];
+        double[] a = new double[points];
+
+        for (int p = 0; p < points; p++) {
+            int from = (int) ((long) p * size / points);
+            int to = (int) ((long) (p + 1) * size / points);
+
+            double sumT = 0, sumA = 0;
+            for (int i = from; i < to; i++) {
+                sumT += times[i];
+                sumA += absorbance[channel][i];
+            }
+            t[p] = sumT / (to - from);
+            a[p] = sumA / (to - from);
+        }
+        return new Series(t, a);
+    }
+
+    // Every stored point as "time_s,A1..A6" lines
+    public synchronized void saveToFile(String filename) throws IOException {
+        try (PrintWriter out = new PrintWriter(filename)) {
+            out.println("# frames=" + frames + " framesPerPoint=" + framesPerPoint);
+            for (int i = 0; i < size; i++) {
+                StringBuilder sb = new StringBuilder();
+                sb.append(String.format(Locale.ROOT, "%.4f", times[i]));
+                for (int c = 0; c < channels; c++) {
+                    sb.append(',').append(String.format(Locale.ROOT, "%.5f", absorbance[c][i]));
+                }
+                out.println(sb);
+            }
+        }
+    }
+
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    // Frames the recorder thread fell behind on and skipped
+    public long getDroppedFrames() {
+        return cursor != null ? cursor.getDropped() : 0;
+    }
+
+    // ---------- HELPER CLASS ----------
+
+    public static class Series {
+        public final double[] time;         // seconds since the first frame
+        public final double[] absorbance;
+
+        public Series(double[] time, double[] absorbance) {
+            this.time = time;
+            this.absorbance = absorbance;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+// Per-channel least-squares line y = intercept + slope * x, updated one point at
+// a time from running sums so a fit is available after every new point.
+public class LinearFit {
+
+    private final int channels;
+    private long count = 0;
+    private double sumX = 0;
+    private double sumXX = 0;
+    private final double[] sumY;
+    private final double[] sumXY;
+    private final double[] sumYY;
+
+    public LinearFit(int channels) {
+        this.channels = channels;
+        this.sumY = new double[channels];
+        this.sumXY = new double[channels];
+        this.sumYY = new double[channels];
+    }
+
+    public synchronized void add(double x, double[] y) {
+        count++;
+        sumX += x;
+        sumXX += x * x;
+        for (int i = 0; i < channels; i++) {
+            sumY[i] += y[i];
+            sumXY[i] += x * y[i];
+            sumYY[i] += y[i] * y[i];
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getSlope(int channel) {
+        double sxx = count * sumXX - sumX * sumX;
+        if (count < 2 || sxx == 0) return Double.NaN;
+        return (count * sumXY[channel] - sumX * sumY[channel]) / sxx;
+    }
+
+    public synchronized double getIntercept(int channel) {
+        if (count < 2) return Double.NaN;
+        return (sumY[channel] - getSlope(channel) * sumX) / count;
+    }
+
+    // Coefficient of determination, 1 = perfectly linear
+    public synchronized double getRSquared(int channel) {
+        double sxx = count * sumXX - sumX * sumX;
+        double syy = count * sumYY[channel] - sumY[channel] * sumY[channel];
+        double sxy = count * sumXY[channel] - sumX * sumY[channel];
+        if (count < 3 || sxx == 0) return Double.NaN;
+        if (syy == 0) return 1;
+        return sxy * sxy / (sxx * syy);
+    }
+}
@@ -2,6 +2,9 @@ import javax.swing.*;
 import java.awt.*;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import org.knowm.xchart.CategoryChart;
 import org.knowm.xchart.XYChart;
@@ -10,13 +13,40 @@ import org.knowm.xchart.XChartPanel;
 
 public class MainWindow extends JFrame {
 
+    // Kinetics: stored points (the memory bound) and points drawn per channel
+    private static final int KINETICS_POINTS = 100_000;
+    private static final int KINETICS_PLOT_POINTS = 1000;
+
+    // Measure Until Converged: readings taken at least / at most
+    private static final int CONVERGE_MIN_READS = 5;
+    private static final int CONVERGE_MAX_READS = 1000;
+
+    // Stream All Devices: ring buffer frames per device
+    private static final int MULTI_STREAM_CAPACITY = 4096;
+
+    // Journal: how much of a run a crash can lose at most
+    private static final long JOURNAL_SYNC_MS = 1000;
+
     private DefaultListModel<String> measurementListModel;
     private JList<String> measurementList;
     private Spectrometer spectrometer;
+    private AcquisitionManager deviceManager;
     private Map<String, MeasurementSet> measurementSets = new HashMap<>();
 
     private JPanel centerPanel;
     private JLabel plotLabel;
+    private JLabel statusLabel;
+    private JLabel timingLabel;
+
+    private KineticsRecorder kinetics;
+    private Timer kineticsTimer;
+
+    private MultiStreamRecorder multiStream;
+    private Timer multiStreamTimer;
+
+    private JobScheduler plan;
+    private java.io.File journalDirectory;
+    private ParameterSweep sweep;
 
     public MainWindow() {
 
@@ -30,6 +60,7 @@ public class MainWindow extends JFrame {
         createMenuBar();
         createLeftPanel();
         createCenterPanel();
+        createStatusBar();
     }
 
     /* ================= MENU ================= */
@@ -44,6 +75,8 @@ public class MainWindow extends JFrame {
 
         JMenuItem loadItem = new JMenuItem("Load Measurement");
         JMenuItem saveItem = new JMenuItem("Save Measurement");
+        JMenuItem recoverItem = new JMenuItem("Recover Journals...");
+        JMenuItem catalogItem = new JMenuItem("Browse Catalog...");
         JMenuItem exitItem = new JMenuItem("Exit");
 
         loadItem.addActionListener(e -> {
@@ -56,43 +89,23 @@ public class MainWindow extends JFrame {
             }
 
             java.io.File file = chooser.getSelectedFile();
+            String path = file.getAbsolutePath();
             try {
-                MeasurementSet set =
-                        MeasurementSet.loadFromFile(file.getAbsolutePath());
+                MeasurementSet set;
 
                 // ---- VALIDATION ----
-                java.util.List measurements = set.getMeasurements();
-                if (measurements.isEmpty()) {
-                    JOptionPane.showMessageDialog(
-                            this,
-                            "Selected file does not contain any measurement data.",
-                            "Invalid file",
-                            JOptionPane.ERROR_MESSAGE
-                    );
-                    return;
-                }
-
-                // expect 6 values per spectrum for AS726x
-                int expectedChannels = 6;
-                for (Object o : measurements) {
-                    if (!(o instanceof double[])) {
-                        JOptionPane.showMessageDialog(
-                                this,
-                                "Selected file is not a valid measurement file.",
-                                "Invalid file",
-                                JOptionPane.ERROR_MESSAGE
-                        );
-                        return;
+                // Loading copies every row to memory; a binary file is checked
+                // from its header first, a text file can only be checked after parsing
+                if (MeasurementFile.isBinary(path)) {
+                    try (MeasurementFile binary = MeasurementFile.open(path)) {
+                        if (!isValidMeasurement(binary.size(), binary.getChannels())) {
+                            return;
+                        }
+                        set = binary.readAll();
                     }
-                    double[] m = (double[]) o;
-                    if (m.length != expectedChannels) {
-                        JOptionPane.showMessageDialog(
-                                this,
-                                "Selected file has wrong data format (expected "
-                                        + expectedChannels + " channels).",
-                                "Invalid file",
-                                JOptionPane.ERROR_MESSAGE
-                        );
+                } else {
+                    set = MeasurementSet.loadFromFile(path);
+                    if (!isValidMeasurement(set.size(), set.getChannels())) {
                         return;
                     }
                 }
@@ -123,95 +136,874 @@ public class MainWindow extends JFrame {
             }
         });
 
+        recoverItem.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser(journalDirectory);
+            chooser.setDialogTitle("Recover Journals");
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+
+            try {
+                // Runs that never closed their journal, i.e. cut short by a crash
+                java.util.List<java.io.File> unfinished =
+                        MeasurementJournal.findUnfinished(chooser.getSelectedFile());
+
+                for (java.io.File file : unfinished) {
+                    MeasurementSet set = MeasurementJournal.recover(file);
+                    String name = set.getName() != null ? set.getName() : file.getName();
+                    measurementSets.put(name, set);
+                    addMeasurement(name);
+                }
+
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Recovered " + unfinished.size() + " unfinished run(s).",
+                        "Recover Journals",
+                        JOptionPane.INFORMATION_MESSAGE
+                );
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Failed to recover:\n" + ex.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+            }
+        });
+
+        catalogItem.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Browse Catalog");
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            java.io.File directory = chooser.getSelectedFile();
+
+            catalogItem.setEnabled(false);
+            statusLabel.setText("Indexing " + directory.getName() + "...");
+
+            // Only new and changed files are read, the first time that is all of them
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    MeasurementCatalog catalog = MeasurementCatalog.open(directory);
+                    catalog.refresh();
+                    return catalog;
+                } catch (java.io.IOException ex) {
+                    throw new CompletionException(ex);
+                }
+            }).whenComplete((catalog, error) -> SwingUtilities.invokeLater(() -> {
+
+                catalogItem.setEnabled(true);
+                statusLabel.setText(" ");
+
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException
+                            ? error.getCause() : error;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(
+                            this,
+                            "Failed to index:\n" + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                    return;
+                }
+                showCatalog(catalog);
+            }));
+        });
+
         saveItem.addActionListener(e -> {
             String selectedName = getSelectedMeasurement();
             if (selectedName == null) {
                 JOptionPane.showMessageDialog(
                         this,
-                        "No measurement selected.",
+                        "No measurement selected.",
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+
+            MeasurementSet set = measurementSets.get(selectedName);
+            if (set == null) {
+                JOptionPane.showMessageDialog(
+                        this,
+                        "No data available for the selected measurement.",
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Save Measurement");
+
+            // Suggest default file name based on measurement name
+            chooser.setSelectedFile(new java.io.File(selectedName + ".txt"));
+
+            int result = chooser.showSaveDialog(this);
+            if (result == JFileChooser.APPROVE_OPTION) {
+                java.io.File file = chooser.getSelectedFile();
+                try {
+                    // Binary for .msb, optionally compressed, text for anything else
+                    if (file.getName().toLowerCase().endsWith(MeasurementFile.EXTENSION)) {
+                        int compress = JOptionPane.showConfirmDialog(
+                                this,
+                                "Compress the measurement columns?",
+                                "Save Measurement",
+                                JOptionPane.YES_NO_OPTION
+                        );
+                        MeasurementFile.write(set, file.getAbsolutePath(),
+                                compress == JOptionPane.YES_OPTION);
+                    } else {
+                        set.saveToFile(file.getAbsolutePath());
+                    }
+                    JOptionPane.showMessageDialog(
+                            this,
+                            "Saved to:\n" + file.getAbsolutePath(),
+                            "Save successful",
+                            JOptionPane.INFORMATION_MESSAGE
+                    );
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(
+                            this,
+                            "Failed to save:\n" + ex.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                }
+            }
+        });
+
+        exitItem.addActionListener(e -> System.exit(0));
+
+        fileMenu.add(loadItem);
+        fileMenu.add(saveItem);
+        fileMenu.add(recoverItem);
+        fileMenu.add(catalogItem);
+        fileMenu.addSeparator();
+        fileMenu.add(exitItem);
+
+        /* ========== MEASUREMENT ========== */
+
+        JMenu measurementMenu = new JMenu("Measurement");
+
+        JMenuItem connectItem = new JMenuItem("Connect");
+        JMenuItem simulatorItem = new JMenuItem("Connect Simulator");
+        JMenuItem configureItem = new JMenuItem("Configure");
+        JMenuItem measureItem = new JMenuItem("Measure");
+        JMenuItem convergeItem = new JMenuItem("Measure Until Converged...");
+        JMenuItem autoExposureItem = new JMenuItem("Auto Exposure");
+        JMenuItem darkCorrectedItem = new JMenuItem("Measure Dark Corrected");
+        JCheckBoxMenuItem lampItem = new JCheckBoxMenuItem("Wait for Stable Lamp");
+        JCheckBoxMenuItem journalItem = new JCheckBoxMenuItem("Journal to Disk...");
+        JMenuItem startKineticsItem = new JMenuItem("Start Kinetics");
+        JMenuItem stopKineticsItem = new JMenuItem("Stop Kinetics");
+        JMenuItem newPlanItem = new JMenuItem("New Plan...");
+        JMenuItem runPlanItem = new JMenuItem("Run Plan...");
+        JMenuItem cancelPlanItem = new JMenuItem("Cancel Plan");
+        JMenuItem sweepItem = new JMenuItem("Parameter Sweep...");
+        JMenuItem cancelSweepItem = new JMenuItem("Cancel Sweep");
+        JMenuItem connectAllItem = new JMenuItem("Connect All Devices");
+        JMenuItem measureAllItem = new JMenuItem("Measure All Devices");
+        JMenuItem streamAllItem = new JMenuItem("Stream All Devices...");
+        JMenuItem stopStreamsItem = new JMenuItem("Stop All Streams");
+
+        measureAllItem.setEnabled(false);
+        streamAllItem.setEnabled(false);
+        stopStreamsItem.setEnabled(false);
+
+        configureItem.setEnabled(false);
+        measureItem.setEnabled(false);
+        convergeItem.setEnabled(false);
+        autoExposureItem.setEnabled(false);
+        darkCorrectedItem.setEnabled(false);
+        startKineticsItem.setEnabled(false);
+        stopKineticsItem.setEnabled(false);
+        newPlanItem.setEnabled(false);
+        runPlanItem.setEnabled(false);
+        cancelPlanItem.setEnabled(false);
+        sweepItem.setEnabled(false);
+        cancelSweepItem.setEnabled(false);
+
+        connectItem.addActionListener(e -> {
+
+            if (spectrometer != null) {
+                spectrometer.close();   // release the port before reconnecting
+                spectrometer = null;
+            }
+
+            try {
+                spectrometer = new Spectrometer();
+                spectrometer.setLampStabilization(lampItem.isSelected());
+                spectrometer.setJournal(journalDirectory, JOURNAL_SYNC_MS);
+
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Connected to " + spectrometer.getPortName(),
+                        "Connection successful",
+                        JOptionPane.INFORMATION_MESSAGE
+                );
+
+                configureItem.setEnabled(true);
+                measureItem.setEnabled(true);
+                convergeItem.setEnabled(true);
+                autoExposureItem.setEnabled(true);
+                darkCorrectedItem.setEnabled(true);
+                startKineticsItem.setEnabled(true);
+                newPlanItem.setEnabled(true);
+                runPlanItem.setEnabled(true);
+                sweepItem.setEnabled(true);
+
+            } catch (Exception ex) {
+
+                spectrometer = null;
+
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Unable to connect.",
+                        "Connection error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+            }
+        });
+
+        simulatorItem.addActionListener(e -> {
+
+            if (spectrometer != null) {
+                spectrometer.close();   // release the port before reconnecting
+                spectrometer = null;
+            }
+
+            try {
+                spectrometer = new Spectrometer(new SimulatedSpectrometer());
+                spectrometer.setLampStabilization(lampItem.isSelected());
+                spectrometer.setJournal(journalDirectory, JOURNAL_SYNC_MS);
+
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Connected to simulated spectrometer",
+                        "Connection successful",
+                        JOptionPane.INFORMATION_MESSAGE
+                );
+
+                configureItem.setEnabled(true);
+                measureItem.setEnabled(true);
+                convergeItem.setEnabled(true);
+                autoExposureItem.setEnabled(true);
+                darkCorrectedItem.setEnabled(true);
+                startKineticsItem.setEnabled(true);
+                newPlanItem.setEnabled(true);
+                runPlanItem.setEnabled(true);
+                sweepItem.setEnabled(true);
+
+            } catch (Exception ex) {
+
+                spectrometer = null;
+
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Unable to start simulator.",
+                        "Connection error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+            }
+        });
+
+        configureItem.addActionListener(e -> {
+
+            if (spectrometer == null && deviceManager == null) {
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Not connected to spectrometer.",
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+
+            // Current parameters could later be read back from the spectrometer.
+            Map<String, Object> currentParams = new HashMap<>();
+            Spectrometer current = spectrometer != null ? spectrometer : deviceManager.getDevice(0);
+            currentParams.put("depth", current.getPipelineDepth());
+            currentParams.put("exposure", (int) Math.round(current.getExposureTarget() * 100));
+
+            ConfigureDialog dialog = new ConfigureDialog(this, currentParams);
+            dialog.setVisible(true);
+
+            if (dialog.isConfirmed()) {
+                Map<String, Object> params = dialog.getParameters();
+                System.out.println("New parameters: " + params);
+
+                // Map dialog params -> Spectrometer.configure(...)
+                int integrationTime      = (int) params.get("int");
+                int gain                 = (int) params.get("gain");
+                int avg                  = (int) params.get("avg");
+                int numberOfMeasurements = (int) params.get("count");
+                String mode              = params.get("mode").toString();
+                int lightInt             = (int) params.get("light");
+                int pipelineDepth        = (int) params.get("depth");
+                double exposureTarget    = (int) params.get("exposure") / 100.0;
+
+                // Apply configuration to the spectrometer(s)
+                if (spectrometer != null) {
+                    spectrometer.configure(
+                            integrationTime,
+                            gain,
+                            avg,
+                            mode,
+                            numberOfMeasurements,
+                            lightInt
+                    );
+                    spectrometer.setPipelineDepth(pipelineDepth);
+                    spectrometer.setExposureTarget(exposureTarget);
+                }
+                if (deviceManager != null) {
+                    deviceManager.configure(
+                            integrationTime,
+                            gain,
+                            avg,
+                            mode,
+                            numberOfMeasurements,
+                            lightInt
+                    );
+                    for (int i = 0; i < deviceManager.size(); i++) {
+                        deviceManager.getDevice(i).setPipelineDepth(pipelineDepth);
+                        deviceManager.getDevice(i).setExposureTarget(exposureTarget);
+                    }
+                }
+            }
+        });
+
+        measureItem.addActionListener(e -> {
+            if (spectrometer == null) {
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Not connected to spectrometer.",
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+
+            String baseName = JOptionPane.showInputDialog(
+                    this,
+                    "Enter measurement name:",
+                    "New Measurement",
+                    JOptionPane.PLAIN_MESSAGE
+            );
+
+            if (baseName == null || baseName.trim().isEmpty()) {
+                // user cancelled or empty input
+                return;
+            }
+
+            measureItem.setEnabled(false);
+            statusLabel.setText("Measuring " + baseName.trim() + "...");
+
+            spectrometer.measureAsync(
+                    baseName.trim(),
+                    (done, total) -> SwingUtilities.invokeLater(() ->
+                            statusLabel.setText("Measuring " + baseName.trim()
+                                    + ": " + done + " / " + total)),
+                    0,
+                    TimeUnit.MILLISECONDS
+            ).whenComplete((set, error) -> SwingUtilities.invokeLater(() -> {
+
+                measureItem.setEnabled(true);
+                statusLabel.setText(" ");
+
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException
+                            ? error.getCause() : error;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(
+                            this,
+                            "Measurement failed:\n" + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                    return;
+                }
+
+                String fullName = set.getName(); // baseName + timestamp
+                addMeasurement(fullName);
+                measurementSets.put(fullName, set);
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Measurement completed:\n" + fullName,
+                        "Measurement",
+                        JOptionPane.INFORMATION_MESSAGE
+                );
+            }));
+        });
+
+        convergeItem.addActionListener(e -> {
+
+            String baseName = JOptionPane.showInputDialog(
+                    this,
+                    "Enter measurement name:",
+                    "New Measurement Until Converged",
+                    JOptionPane.PLAIN_MESSAGE
+            );
+
+            if (baseName == null || baseName.trim().isEmpty()) {
+                return;
+            }
+
+            String target = JOptionPane.showInputDialog(
+                    this,
+                    "Target standard error of the mean (% of the mean):",
+                    "0.1"
+            );
+            if (target == null) {
+                return;
+            }
+
+            double relativeError;
+            try {
+                relativeError = Double.parseDouble(target.trim()) / 100;
+            } catch (NumberFormatException ex) {
+                relativeError = -1;
+            }
+            if (!(relativeError > 0)) {
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Invalid target: " + target,
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+
+            convergeItem.setEnabled(false);
+            statusLabel.setText("Measuring " + baseName.trim() + " until converged...");
+
+            spectrometer.measureUntilConverged(
+                    baseName.trim(),
+                    relativeError,
+                    CONVERGE_MIN_READS,
+                    CONVERGE_MAX_READS,
+                    (done, total) -> SwingUtilities.invokeLater(() ->
+                            statusLabel.setText("Measuring " + baseName.trim()
+                                    + ": " + done + " readings"))
+            ).whenComplete((set, error) -> SwingUtilities.invokeLater(() -> {
+
+                convergeItem.setEnabled(true);
+                statusLabel.setText(" ");
+
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException
+                            ? error.getCause() : error;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(
+                            this,
+                            "Measurement failed:\n" + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                    return;
+                }
+
+                addMeasurement(set.getName());
+                measurementSets.put(set.getName(), set);
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Measurement completed:\n" + set.getName()
+                                + "\n" + set.size() + " readings",
+                        "Measurement",
+                        JOptionPane.INFORMATION_MESSAGE
+                );
+            }));
+        });
+
+        startKineticsItem.addActionListener(e -> {
+
+            // The selected measurement is the reference (I0)
+            String refName = getSelectedMeasurement();
+            MeasurementSet refSet = refName != null ? measurementSets.get(refName) : null;
+            if (refSet == null || refSet.size() == 0) {
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Select a reference measurement first.",
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+
+            try {
+                kinetics = new KineticsRecorder(refSet, KINETICS_POINTS);
+                kinetics.start(spectrometer);
+            } catch (Exception ex) {
+                kinetics = null;
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Unable to start kinetics:\n" + ex.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+
+            Visualizer vis = new Visualizer(refSet);
+            XYChart chart = vis.createKineticsChart(kinetics, KINETICS_PLOT_POINTS);
+            XChartPanel<XYChart> panel = new XChartPanel<>(chart);
+
+            centerPanel.removeAll();
+            centerPanel.add(panel, BorderLayout.CENTER);
+            centerPanel.revalidate();
+            centerPanel.repaint();
+
+            // Live view, decimated to what the plot can show
+            kineticsTimer = new Timer(500, t -> {
+                vis.updateKineticsChart(chart, kinetics, KINETICS_PLOT_POINTS);
+                panel.repaint();
+                statusLabel.setText("Kinetics against " + refName + ": "
+                        + kinetics.getFrameCount() + " frames, "
+                        + kinetics.getDroppedFrames() + " skipped");
+            });
+            kineticsTimer.start();
+
+            startKineticsItem.setEnabled(false);
+            stopKineticsItem.setEnabled(true);
+            measureItem.setEnabled(false);
+        });
+
+        stopKineticsItem.addActionListener(e -> {
+
+            kineticsTimer.stop();
+            try {
+                kinetics.stop();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+
+            startKineticsItem.setEnabled(true);
+            stopKineticsItem.setEnabled(false);
+            measureItem.setEnabled(true);
+            statusLabel.setText(" ");
+
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Save Kinetics");
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                kinetics.saveToFile(chooser.getSelectedFile().getAbsolutePath());
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Failed to save:\n" + ex.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+            }
+        });
+
+        lampItem.addActionListener(e -> {
+            if (spectrometer != null) {
+                spectrometer.setLampStabilization(lampItem.isSelected());
+            }
+        });
+
+        journalItem.addActionListener(e -> {
+            journalDirectory = null;
+
+            if (journalItem.isSelected()) {
+                JFileChooser chooser = new JFileChooser();
+                chooser.setDialogTitle("Journal Directory");
+                chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+                if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                    journalDirectory = chooser.getSelectedFile();
+                } else {
+                    journalItem.setSelected(false);
+                }
+            }
+
+            if (spectrometer != null) {
+                spectrometer.setJournal(journalDirectory, JOURNAL_SYNC_MS);
+            }
+        });
+
+        darkCorrectedItem.addActionListener(e -> {
+
+            String baseName = JOptionPane.showInputDialog(
+                    this,
+                    "Enter measurement name:",
+                    "New Dark Corrected Measurement",
+                    JOptionPane.PLAIN_MESSAGE
+            );
+
+            if (baseName == null || baseName.trim().isEmpty()) {
+                return;
+            }
+
+            darkCorrectedItem.setEnabled(false);
+            statusLabel.setText("Measuring " + baseName.trim() + " with dark correction...");
+
+            spectrometer.measureDarkCorrected(
+                    baseName.trim(),
+                    (done, total) -> SwingUtilities.invokeLater(() ->
+                            statusLabel.setText("Measuring " + baseName.trim()
+                                    + ": " + done + " / " + total))
+            ).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+
+                darkCorrectedItem.setEnabled(true);
+                statusLabel.setText(" ");
+
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException
+                            ? error.getCause() : error;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(
+                            this,
+                            "Measurement failed:\n" + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                    return;
+                }
+
+                // Corrected data plus the dark frames it was corrected with
+                for (MeasurementSet set : new MeasurementSet[]{result.corrected, result.dark}) {
+                    addMeasurement(set.getName());
+                    measurementSets.put(set.getName(), set);
+                }
+            }));
+        });
+
+        autoExposureItem.addActionListener(e -> {
+
+            String sampleName = JOptionPane.showInputDialog(
+                    this,
+                    "Enter sample name:",
+                    "Auto Exposure",
+                    JOptionPane.PLAIN_MESSAGE
+            );
+
+            if (sampleName == null || sampleName.trim().isEmpty()) {
+                return;
+            }
+
+            autoExposureItem.setEnabled(false);
+            statusLabel.setText("Adjusting exposure for " + sampleName.trim() + "...");
+
+            spectrometer.autoExpose(sampleName.trim())
+                    .whenComplete((exposure, error) -> SwingUtilities.invokeLater(() -> {
+
+                autoExposureItem.setEnabled(true);
+
+                if (error != null) {
+                    statusLabel.setText(" ");
+                    Throwable cause = error instanceof CompletionException
+                            ? error.getCause() : error;
+                    JOptionPane.showMessageDialog(
+                            this,
+                            "Auto exposure failed:\n" + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                    return;
+                }
+
+                statusLabel.setText(sampleName.trim() + ": " + exposure);
+            }));
+        });
+
+        newPlanItem.addActionListener(e -> {
+
+            String count = JOptionPane.showInputDialog(
+                    this,
+                    "Number of samples (after dark and reference):",
+                    "New Plan",
+                    JOptionPane.PLAIN_MESSAGE
+            );
+            if (count == null || count.trim().isEmpty()) {
+                return;
+            }
+            String delay = JOptionPane.showInputDialog(
+                    this,
+                    "Delay before each sample [s]:",
+                    "New Plan",
+                    JOptionPane.PLAIN_MESSAGE
+            );
+            if (delay == null) {
+                return;
+            }
+
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Save Plan");
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+
+            try {
+                int samples = Integer.parseInt(count.trim());
+                long delayMs = delay.trim().isEmpty()
+                        ? 0 : (long) (Double.parseDouble(delay.trim()) * 1000);
+
+                // Every job starts from the current configuration
+                Map<String, Object> config = spectrometer.getParameters();
+                JobScheduler scheduler = new JobScheduler(spectrometer, chooser.getSelectedFile());
+
+                JobScheduler.Job dark = new JobScheduler.Job(JobScheduler.Type.DARK, "Dark");
+                JobScheduler.Job ref = new JobScheduler.Job(JobScheduler.Type.REFERENCE, "Reference");
+                dark.params.putAll(config);
+                ref.params.putAll(config);
+                scheduler.addJob(dark);
+                scheduler.addJob(ref);
+
+                for (int i = 1; i <= samples; i++) {
+                    JobScheduler.Job sample =
+                            new JobScheduler.Job(JobScheduler.Type.SAMPLE, "Sample" + i);
+                    sample.params.putAll(config);
+                    scheduler.addJob(sample.withDelay(delayMs));
+                }
+
+                runPlan(scheduler, runPlanItem, newPlanItem, cancelPlanItem);
+
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Failed to create plan:\n" + ex.getMessage(),
                         "Error",
                         JOptionPane.ERROR_MESSAGE
                 );
+            }
+        });
+
+        runPlanItem.addActionListener(e -> {
+
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Run Plan");
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
 
-            MeasurementSet set = measurementSets.get(selectedName);
-            if (set == null) {
+            try {
+                JobScheduler scheduler = JobScheduler.load(spectrometer, chooser.getSelectedFile());
+
+                // Resuming: results of finished jobs are already on disk
+                for (Map.Entry<String, MeasurementSet> entry
+                        : scheduler.loadCompletedResults().entrySet()) {
+                    if (!measurementSets.containsKey(entry.getKey())) {
+                        addMeasurement(entry.getKey());
+                        measurementSets.put(entry.getKey(), entry.getValue());
+                    }
+                }
+
+                runPlan(scheduler, runPlanItem, newPlanItem, cancelPlanItem);
+
+            } catch (Exception ex) {
+                ex.printStackTrace();
                 JOptionPane.showMessageDialog(
                         this,
-                        "No data available for the selected measurement.",
+                        "Failed to load plan:\n" + ex.getMessage(),
                         "Error",
                         JOptionPane.ERROR_MESSAGE
                 );
+            }
+        });
+
+        cancelPlanItem.addActionListener(e -> {
+            if (plan != null) {
+                plan.cancel();
+            }
+        });
+
+        sweepItem.addActionListener(e -> {
+
+            String baseName = JOptionPane.showInputDialog(
+                    this,
+                    "Enter sweep name:",
+                    "Parameter Sweep (all gains, 10-255 ms, light 0-100)",
+                    JOptionPane.PLAIN_MESSAGE
+            );
+
+            if (baseName == null || baseName.trim().isEmpty()) {
                 return;
             }
 
-            JFileChooser chooser = new JFileChooser();
-            chooser.setDialogTitle("Save Measurement");
+            if (sweep != null) {
+                sweep.close();
+            }
+            sweep = new ParameterSweep(spectrometer);
 
-            // Suggest default file name based on measurement name
-            chooser.setSelectedFile(new java.io.File(selectedName + ".txt"));
+            sweepItem.setEnabled(false);
+            cancelSweepItem.setEnabled(true);
+            measureItem.setEnabled(false);
 
-            int result = chooser.showSaveDialog(this);
-            if (result == JFileChooser.APPROVE_OPTION) {
-                java.io.File file = chooser.getSelectedFile();
-                try {
-                    set.saveToFile(file.getAbsolutePath());
-                    JOptionPane.showMessageDialog(
-                            this,
-                            "Saved to:\n" + file.getAbsolutePath(),
-                            "Save successful",
-                            JOptionPane.INFORMATION_MESSAGE
-                    );
-                } catch (Exception ex) {
-                    ex.printStackTrace();
+            sweep.start(baseName.trim(), (point, index, total) -> SwingUtilities.invokeLater(() -> {
+                statusLabel.setText("Sweep: point " + (index + 1) + "/" + total + " " + point);
+                if (point.set != null) {
+                    addMeasurement(point.set.getName());
+                    measurementSets.put(point.set.getName(), point.set);
+                }
+            })).whenComplete((points, error) -> SwingUtilities.invokeLater(() -> {
+
+                sweepItem.setEnabled(true);
+                cancelSweepItem.setEnabled(false);
+                measureItem.setEnabled(true);
+                statusLabel.setText(" ");
+
+                if (error != null && !(error instanceof InterruptedException)) {
+                    error.printStackTrace();
                     JOptionPane.showMessageDialog(
                             this,
-                            "Failed to save:\n" + ex.getMessage(),
+                            "Sweep failed:\n" + error.getMessage(),
                             "Error",
                             JOptionPane.ERROR_MESSAGE
                     );
                 }
-            }
-        });
-
-        exitItem.addActionListener(e -> System.exit(0));
-
-        fileMenu.add(loadItem);
-        fileMenu.add(saveItem);
-        fileMenu.addSeparator();
-        fileMenu.add(exitItem);
-
-        /* ========== MEASUREMENT ========== */
 
-        JMenu measurementMenu = new JMenu("Measurement");
+                // Fits of whatever was measured, also after a cancel or failure
+                JTextArea area = new JTextArea(sweep.getSummary(), 20, 50);
+                area.setEditable(false);
+                JOptionPane.showMessageDialog(
+                        this,
+                        new JScrollPane(area),
+                        "Linearity",
+                        JOptionPane.INFORMATION_MESSAGE
+                );
+            }));
+        });
 
-        JMenuItem connectItem = new JMenuItem("Connect");
-        JMenuItem configureItem = new JMenuItem("Configure");
-        JMenuItem measureItem = new JMenuItem("Measure");
+        cancelSweepItem.addActionListener(e -> {
+            if (sweep != null) {
+                sweep.cancel();
+            }
+        });
 
-        configureItem.setEnabled(false);
-        measureItem.setEnabled(false);
+        connectAllItem.addActionListener(e -> {
 
-        connectItem.addActionListener(e -> {
+            if (deviceManager != null) {
+                deviceManager.close();
+                deviceManager = null;
+            }
 
             try {
-                spectrometer = new Spectrometer();
+                deviceManager = AcquisitionManager.connectAll();
 
                 JOptionPane.showMessageDialog(
                         this,
-                        "Connected to " + spectrometer.getPortName(),
+                        "Connected to " + deviceManager.getDeviceNames(),
                         "Connection successful",
                         JOptionPane.INFORMATION_MESSAGE
                 );
 
                 configureItem.setEnabled(true);
-                measureItem.setEnabled(true);
+                measureAllItem.setEnabled(true);
+                streamAllItem.setEnabled(true);
 
             } catch (Exception ex) {
 
-                spectrometer = null;
-
                 JOptionPane.showMessageDialog(
                         this,
                         "Unable to connect.",
@@ -221,98 +1013,147 @@ public class MainWindow extends JFrame {
             }
         });
 
-        configureItem.addActionListener(e -> {
+        measureAllItem.addActionListener(e -> {
 
-            if (spectrometer == null) {
-                JOptionPane.showMessageDialog(
-                        this,
-                        "Not connected to spectrometer.",
-                        "Error",
-                        JOptionPane.ERROR_MESSAGE
-                );
+            String baseName = JOptionPane.showInputDialog(
+                    this,
+                    "Enter measurement name:",
+                    "New Measurement (all devices)",
+                    JOptionPane.PLAIN_MESSAGE
+            );
+
+            if (baseName == null || baseName.trim().isEmpty()) {
                 return;
             }
 
-            // Current parameters could later be read back from the spectrometer.
-            Map<String, Object> currentParams = new HashMap<>();
+            measureAllItem.setEnabled(false);
+            statusLabel.setText("Measuring " + baseName.trim() + " on "
+                    + deviceManager.size() + " devices...");
 
-            ConfigureDialog dialog = new ConfigureDialog(this, currentParams);
-            dialog.setVisible(true);
+            deviceManager.measureAll(baseName.trim())
+                    .whenComplete((sets, error) -> SwingUtilities.invokeLater(() -> {
 
-            if (dialog.isConfirmed()) {
-                Map<String, Object> params = dialog.getParameters();
-                System.out.println("New parameters: " + params);
+                measureAllItem.setEnabled(true);
+                statusLabel.setText(" ");
 
-                // Map dialog params -> Spectrometer.configure(...)
-                int integrationTime      = (int) params.get("int");
-                int gain                 = (int) params.get("gain");
-                int avg                  = (int) params.get("avg");
-                int numberOfMeasurements = (int) params.get("count");
-                String mode              = params.get("mode").toString();
-                int lightInt             = (int) params.get("light");
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException
+                            ? error.getCause() : error;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(
+                            this,
+                            "Measurement failed:\n" + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                    return;
+                }
 
-                // Apply configuration to the spectrometer
-                spectrometer.configure(
-                        integrationTime,
-                        gain,
-                        avg,
-                        mode,
-                        numberOfMeasurements,
-                        lightInt
-                );
-            }
+                // One list entry per device: name_timestamp@device
+                for (Map.Entry<String, MeasurementSet> entry : sets.entrySet()) {
+                    String fullName = entry.getValue().getName() + "@" + entry.getKey();
+                    addMeasurement(fullName);
+                    measurementSets.put(fullName, entry.getValue());
+                }
+            }));
         });
 
-        measureItem.addActionListener(e -> {
-            if (spectrometer == null) {
-                JOptionPane.showMessageDialog(
-                        this,
-                        "Not connected to spectrometer.",
-                        "Error",
-                        JOptionPane.ERROR_MESSAGE
-                );
-                return;
-            }
+        streamAllItem.addActionListener(e -> {
 
             String baseName = JOptionPane.showInputDialog(
                     this,
                     "Enter measurement name:",
-                    "New Measurement",
+                    "New Stream (all devices)",
                     JOptionPane.PLAIN_MESSAGE
             );
 
             if (baseName == null || baseName.trim().isEmpty()) {
-                // user cancelled or empty input
                 return;
             }
 
             try {
-                spectrometer.measure(baseName.trim());
-                MeasurementSet set = spectrometer.getMeasurementSet();
-                String fullName = set.getName(); // baseName + timestamp
-                addMeasurement(fullName);
-                measurementSets.put(fullName, set);
+                multiStream = new MultiStreamRecorder(deviceManager, baseName.trim());
+                multiStream.start(MULTI_STREAM_CAPACITY);
+            } catch (Exception ex) {
+                multiStream = null;
+                ex.printStackTrace();
                 JOptionPane.showMessageDialog(
                         this,
-                        "Measurement completed:\n" + fullName,
-                        "Measurement",
-                        JOptionPane.INFORMATION_MESSAGE
+                        "Unable to start streams:\n" + ex.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
                 );
+                return;
+            }
+
+            multiStreamTimer = new Timer(500, t -> statusLabel.setText(
+                    "Streaming " + deviceManager.size() + " devices: "
+                            + multiStream.getFrameCount() + " frames"));
+            multiStreamTimer.start();
+
+            streamAllItem.setEnabled(false);
+            stopStreamsItem.setEnabled(true);
+            measureAllItem.setEnabled(false);
+            connectAllItem.setEnabled(false);
+        });
+
+        stopStreamsItem.addActionListener(e -> {
+
+            multiStreamTimer.stop();
+            streamAllItem.setEnabled(true);
+            stopStreamsItem.setEnabled(false);
+            measureAllItem.setEnabled(true);
+            connectAllItem.setEnabled(true);
+            statusLabel.setText(" ");
+
+            Map<String, MeasurementSet> sets;
+            try {
+                sets = multiStream.stop();
             } catch (Exception ex) {
                 ex.printStackTrace();
                 JOptionPane.showMessageDialog(
                         this,
-                        "Measurement failed:\n" + ex.getMessage(),
+                        "Failed to stop streams:\n" + ex.getMessage(),
                         "Error",
                         JOptionPane.ERROR_MESSAGE
                 );
+                return;
+            } finally {
+                multiStream = null;
+            }
+
+            // One list entry per device: name_timestamp@device
+            for (Map.Entry<String, MeasurementSet> entry : sets.entrySet()) {
+                String fullName = entry.getValue().getName() + "@" + entry.getKey();
+                addMeasurement(fullName);
+                measurementSets.put(fullName, entry.getValue());
             }
         });
 
         measurementMenu.add(connectItem);
+        measurementMenu.add(simulatorItem);
         measurementMenu.addSeparator();
         measurementMenu.add(configureItem);
         measurementMenu.add(measureItem);
+        measurementMenu.add(convergeItem);
+        measurementMenu.add(darkCorrectedItem);
+        measurementMenu.add(autoExposureItem);
+        measurementMenu.add(lampItem);
+        measurementMenu.add(journalItem);
+        measurementMenu.addSeparator();
+        measurementMenu.add(startKineticsItem);
+        measurementMenu.add(stopKineticsItem);
+        measurementMenu.addSeparator();
+        measurementMenu.add(newPlanItem);
+        measurementMenu.add(runPlanItem);
+        measurementMenu.add(cancelPlanItem);
+        measurementMenu.add(sweepItem);
+        measurementMenu.add(cancelSweepItem);
+        measurementMenu.addSeparator();
+        measurementMenu.add(connectAllItem);
+        measurementMenu.add(measureAllItem);
+        measurementMenu.add(streamAllItem);
+        measurementMenu.add(stopStreamsItem);
 
         /* ========== VIEW ========== */
 
@@ -320,6 +1161,7 @@ public class MainWindow extends JFrame {
 
         JMenuItem spectrumItem = new JMenuItem("Spectrum");
         JMenuItem absorptionItem = new JMenuItem("Absorption");
+        JMenuItem timeSeriesItem = new JMenuItem("Time Series");
 
         spectrumItem.addActionListener(e -> {
             String name = getSelectedMeasurement();
@@ -375,6 +1217,27 @@ public class MainWindow extends JFrame {
             centerPanel.repaint();
         });
 
+        timeSeriesItem.addActionListener(e -> {
+            String name = getSelectedMeasurement();
+            MeasurementSet set = name != null ? measurementSets.get(name) : null;
+            if (set == null || set.size() == 0) {
+                JOptionPane.showMessageDialog(
+                        this,
+                        "No data available for the selected measurement.",
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+
+            XYChart chart = new Visualizer(set).createTimeSeriesChart(KINETICS_PLOT_POINTS);
+
+            centerPanel.removeAll();
+            centerPanel.add(new XChartPanel<>(chart), BorderLayout.CENTER);
+            centerPanel.revalidate();
+            centerPanel.repaint();
+        });
+
         absorptionItem.addActionListener(e -> {
             // Build list of available measurement names
             java.util.List<String> names = new java.util.ArrayList<>();
@@ -439,6 +1302,7 @@ public class MainWindow extends JFrame {
 
         viewMenu.add(spectrumItem);
         viewMenu.add(absorptionItem);
+        viewMenu.add(timeSeriesItem);
 
         /* ========== ADD TO BAR ========== */
 
@@ -519,6 +1383,37 @@ public class MainWindow extends JFrame {
         add(centerPanel, BorderLayout.CENTER);
     }
 
+    /* ================= STATUS BAR ================= */
+
+    private void createStatusBar() {
+        statusLabel = new JLabel(" ");
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 8, 2, 8));
+
+        timingLabel = new JLabel(" ");
+        timingLabel.setBorder(BorderFactory.createEmptyBorder(2, 8, 2, 8));
+
+        JPanel statusBar = new JPanel(new BorderLayout());
+        statusBar.add(statusLabel, BorderLayout.CENTER);
+        statusBar.add(timingLabel, BorderLayout.EAST);
+        add(statusBar, BorderLayout.SOUTH);
+
+        // Live frame rate and command latency of the connected spectrometer
+        new Timer(500, e -> updateTimingLabel()).start();
+    }
+
+    private void updateTimingLabel() {
+        if (spectrometer == null) {
+            timingLabel.setText(" ");
+            return;
+        }
+        FrameTimings t = spectrometer.getTimings();
+        timingLabel.setText(String.format(
+                "%.1f frames/s | p99 %.1f ms | lost %d, corrupt %d, dropped %d",
+                t.getFramesPerSecond(), t.getLatencyP99Micros() / 1000.0,
+                spectrometer.getLostFrames(), spectrometer.getCorruptFrames(),
+                spectrometer.getDroppedFrames()));
+    }
+
     /* ================= PUBLIC API ================= */
 
     public void addMeasurement(String name) {
@@ -531,6 +1426,34 @@ public class MainWindow extends JFrame {
 
     /* ================= HELPER ================= */
 
+    // Tells the user why a loaded file is rejected
+    private boolean isValidMeasurement(int rows, int channels) {
+        if (rows == 0) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Selected file does not contain any measurement data.",
+                    "Invalid file",
+                    JOptionPane.ERROR_MESSAGE
+            );
+            return false;
+        }
+
+        // expect 6 values per spectrum for AS726x
+        // (every row has the same channel count, loadFromFile checks that)
+        int expectedChannels = 6;
+        if (channels != expectedChannels) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Selected file has wrong data format (expected "
+                            + expectedChannels + " channels).",
+                    "Invalid file",
+                    JOptionPane.ERROR_MESSAGE
+            );
+            return false;
+        }
+        return true;
+    }
+
     private void showMeasurementDetails(MeasurementSet set) {
         StringBuilder sb = new StringBuilder();
 
@@ -600,6 +1523,129 @@ public class MainWindow extends JFrame {
         );
     }
 
+    // Filters run on the catalog's index only; Load reads the selected files
+    private void showCatalog(MeasurementCatalog catalog) {
+
+        JTextField nameField = new JTextField(10);
+        JTextField fromField = new JTextField(8);
+        JTextField toField = new JTextField(8);
+        JTextField paramField = new JTextField(12);
+
+        javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(
+                new String[]{"Name", "Start", "Frames", "Format", "File"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(model);
+        java.util.List<MeasurementCatalog.Entry> shown = new java.util.ArrayList<>();
+
+        java.time.format.DateTimeFormatter fmt =
+                java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+
+        JDialog dialog = new JDialog(this, "Catalog: " + catalog.getDirectory(), false);
+
+        Runnable search = () -> {
+            try {
+                MeasurementCatalog.Query query = new MeasurementCatalog.Query();
+
+                // Dates as yyyy-MM-dd, both days included
+                long from = fromField.getText().trim().isEmpty() ? Long.MIN_VALUE
+                        : java.time.LocalDate.parse(fromField.getText().trim())
+                                .atStartOfDay(zone).toInstant().toEpochMilli();
+                long to = toField.getText().trim().isEmpty() ? Long.MAX_VALUE
+                        : java.time.LocalDate.parse(toField.getText().trim()).plusDays(1)
+                                .atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+                query.between(from, to);
+
+                if (!nameField.getText().trim().isEmpty()) {
+                    query.namePrefix(nameField.getText().trim());
+                }
+                // key=value, comma separated, e.g. gain=16, integrationTime=50
+                for (String pair : paramField.getText().split(",")) {
+                    String[] parts = pair.split("=", 2);
+                    if (parts.length == 2) {
+                        query.with(parts[0].trim(), parts[1].trim());
+                    }
+                }
+
+                shown.clear();
+                shown.addAll(catalog.query(query));
+                model.setRowCount(0);
+                for (MeasurementCatalog.Entry entry : shown) {
+                    model.addRow(new Object[]{
+                            entry.name,
+                            java.time.Instant.ofEpochMilli(entry.timestamp).atZone(zone).format(fmt),
+                            entry.frames,
+                            entry.format.name().toLowerCase(),
+                            entry.path
+                    });
+                }
+                dialog.setTitle("Catalog: " + catalog.getDirectory() + " (" + shown.size()
+                        + " of " + catalog.size() + ")");
+            } catch (java.time.format.DateTimeParseException ex) {
+                JOptionPane.showMessageDialog(
+                        dialog,
+                        "Dates must be given as yyyy-MM-dd:\n" + ex.getParsedString(),
+                        "Invalid date",
+                        JOptionPane.ERROR_MESSAGE
+                );
+            }
+        };
+
+        JButton searchButton = new JButton("Search");
+        JButton loadButton = new JButton("Load");
+
+        searchButton.addActionListener(e -> search.run());
+
+        loadButton.addActionListener(e -> {
+            for (int row : table.getSelectedRows()) {
+                MeasurementCatalog.Entry entry = shown.get(table.convertRowIndexToModel(row));
+                try {
+                    MeasurementSet set = entry.load();
+                    measurementSets.put(entry.name, set);
+                    addMeasurement(entry.name);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(
+                            dialog,
+                            "Failed to load:\n" + entry.path + "\n" + ex.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                    return;
+                }
+            }
+        });
+
+        JPanel filters = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filters.add(new JLabel("Name:"));
+        filters.add(nameField);
+        filters.add(new JLabel("From:"));
+        filters.add(fromField);
+        filters.add(new JLabel("To:"));
+        filters.add(toField);
+        filters.add(new JLabel("Parameters:"));
+        filters.add(paramField);
+        filters.add(searchButton);
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(loadButton);
+
+        dialog.setLayout(new BorderLayout());
+        dialog.add(filters, BorderLayout.NORTH);
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        dialog.add(buttons, BorderLayout.SOUTH);
+        dialog.getRootPane().setDefaultButton(searchButton);
+        dialog.setSize(900, 500);
+        dialog.setLocationRelativeTo(this);
+
+        search.run();
+        dialog.setVisible(true);
+    }
+
     private void deleteSelectedMeasurement() {
         String name = getSelectedMeasurement();
         if (name == null) {
@@ -615,4 +1661,60 @@ public class MainWindow extends JFrame {
             measurementSets.remove(name);
         }
     }
+
+    // Runs the plan in the background; each result shows up in the list as its job finishes
+    private void runPlan(JobScheduler scheduler, JMenuItem runItem, JMenuItem newItem,
+                         JMenuItem cancelItem) {
+
+        if (plan != null) {
+            plan.close();
+        }
+        plan = scheduler;
+
+        scheduler.setListener(new JobScheduler.Listener() {
+            @Override
+            public void onJobStarted(JobScheduler.Job job, int index, int total) {
+                SwingUtilities.invokeLater(() -> statusLabel.setText(
+                        "Plan: job " + (index + 1) + "/" + total + " (" + job.name + ")..."));
+            }
+
+            @Override
+            public void onJobDone(JobScheduler.Job job, MeasurementSet result) {
+                SwingUtilities.invokeLater(() -> {
+                    addMeasurement(result.getName());
+                    measurementSets.put(result.getName(), result);
+                });
+            }
+
+            @Override
+            public void onJobFailed(JobScheduler.Job job, Throwable error) {
+                error.printStackTrace();
+            }
+        });
+
+        runItem.setEnabled(false);
+        newItem.setEnabled(false);
+        cancelItem.setEnabled(true);
+
+        scheduler.start().whenComplete((v, error) -> SwingUtilities.invokeLater(() -> {
+
+            runItem.setEnabled(true);
+            newItem.setEnabled(true);
+            cancelItem.setEnabled(false);
+            statusLabel.setText(" ");
+
+            if (error instanceof InterruptedException) {
+                statusLabel.setText("Plan cancelled, run it again to resume");
+            } else if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Plan stopped:\n" + cause.getMessage()
+                                + "\nRun it again to resume.",
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+            }
+        }));
+    }
 }
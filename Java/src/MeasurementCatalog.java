@@ -0,0 +1,480 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Index of the measurement files in a directory (and below it): name, start
+// time, parameters, frame count and where the data starts, taken from the file
+// headers. Queries only look at the index, never at the files.
+//
+// The index is kept in <directory>/.catalog, in the style of a measurement plan:
+//
+//   # MeasurementCatalog
+//   [entry]
+//   file=2026-01/Sample1_2026-01-04_14-32-18.msb
+//   length=4096
+//   modified=1767533538000
+//   format=compressed
+//   name=Sample1_2026-01-04_14-32-18
+//   timestamp=1767533530000
+//   frames=100
+//   channels=6
+//   dataOffset=176
+//   param.gain=16
+//   ...
+//
+// param. keys are the measurement parameters, kept apart so none can shadow
+// an entry field. A damaged entry is left out and its file indexed again by
+// refresh(), which re-reads only files whose length or modification time
+// changed since they were indexed.
+public class MeasurementCatalog {
+
+    public static final String INDEX_FILE = ".catalog";
+
+    public enum Format { TEXT, BINARY, COMPRESSED, JOURNAL }
+
+    // Names from Spectrometer end in the start time of the run
+    private static final Pattern NAME_TIME =
+        Pattern.compile("(\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2})$");
+    private static final DateTimeFormatter NAME_TIME_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    private static final String PARAM_PREFIX = "param.";
+    private static final String[] FIELDS = {
+        "file", "length", "modified", "format", "name", "timestamp", "frames", "channels",
+        "dataOffset"
+    };
+
+    private static final byte[] TEXT_HEADER =
+        "# MeasurementSet".getBytes(StandardCharsets.UTF_8);
+
+    private final File directory;
+    private final File indexFile;
+    private Map<String, Entry> entries = new HashMap<>();
+    private List<Entry> byTime = new ArrayList<>();     // sorted by timestamp
+
+    private MeasurementCatalog(File directory) {
+        this.directory = directory.getAbsoluteFile();
+        this.indexFile = new File(this.directory, INDEX_FILE);
+    }
+
+    // ---------- INDEX ----------
+
+    // Loads the saved index of directory; call refresh() to pick up changes
+    public static MeasurementCatalog open(File directory) throws IOException {
+
+        if (!directory.isDirectory()) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        MeasurementCatalog catalog = new MeasurementCatalog(directory);
+        if (!catalog.indexFile.isFile()) {
+            return catalog;
+        }
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(catalog.indexFile), StandardCharsets.UTF_8))) {
+            String line;
+            Map<String, String> section = null;
+
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                if (line.equals("[entry]")) {
+                    catalog.addSection(section);
+                    section = new LinkedHashMap<>();
+                    continue;
+                }
+
+                String[] parts = line.split("=", 2);
+                if (section == null || parts.length != 2) continue;
+                section.put(parts[0].trim(), parts[1].trim());
+            }
+            catalog.addSection(section);
+        }
+        catalog.sortByTime();
+        return catalog;
+    }
+
+    private void addSection(Map<String, String> section) {
+        if (section == null) return;
+        for (String field : FIELDS) {
+            if (!section.containsKey(field)) return;
+        }
+
+        Map<String, Object> parameters = new HashMap<>();
+        for (Map.Entry<String, String> e : section.entrySet()) {
+            if (e.getKey().startsWith(PARAM_PREFIX)) {
+                parameters.put(e.getKey().substring(PARAM_PREFIX.length()), e.getValue());
+            }
+        }
+
+        try {
+            String path = section.get("file");
+            entries.put(path, new Entry(new File(directory, path), path,
+                Long.parseLong(section.get("length")),
+                Long.parseLong(section.get("modified")),
+                Format.valueOf(section.get("format").toUpperCase()),
+                section.get("name"),
+                Long.parseLong(section.get("timestamp")),
+                Long.parseLong(section.get("frames")),
+                Integer.parseInt(section.get("channels")),
+                Long.parseLong(section.get("dataOffset")),
+                parameters));
+        } catch (IllegalArgumentException e) {
+            // Not a number or an unknown format; refresh() indexes the file again
+        }
+    }
+
+    // Indexes new and changed files and drops deleted ones; unchanged files are
+    // only looked at with stat. Returns the number of entries added, updated or
+    // removed, and saves the index if there were any.
+    public synchronized int refresh() throws IOException {
+
+        Map<String, Entry> found = new HashMap<>();
+        int[] changed = {0};
+
+        // The walk hands over each file's attributes, one stat per file
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                return dir.getFileName().toString().startsWith(".") && !dir.equals(directory.toPath())
+                    ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path p, BasicFileAttributes attributes) {
+                if (!attributes.isRegularFile() || p.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.CONTINUE;
+                }
+                long length = attributes.size();
+                long modified = attributes.lastModifiedTime().toMillis();
+                String path = directory.toPath().relativize(p).toString()
+                                       .replace(File.separatorChar, '/');
+
+                Entry old = entries.get(path);
+                if (old != null && old.length == length && old.modified == modified) {
+                    found.put(path, old);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                Entry entry = null;
+                try {
+                    entry = index(p.toFile(), path, length, modified);
+                } catch (IOException | RuntimeException e) {
+                    // A damaged file stays out of the catalog, the rest is indexed
+                    e.printStackTrace();
+                }
+                if (entry != null) {
+                    found.put(path, entry);
+                    changed[0]++;
+                } else if (old != null) {
+                    changed[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path p, IOException e) {
+                e.printStackTrace();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        for (String path : entries.keySet()) {
+            if (!found.containsKey(path)) changed[0]++;
+        }
+
+        entries = found;
+        sortByTime();
+        if (changed[0] > 0) {
+            save();
+        }
+        return changed[0];
+    }
+
+    // Written to a temporary file and moved over the index, so a crash never
+    // leaves a half-written index behind
+    private void save() throws IOException {
+
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            pw.println("# MeasurementCatalog");
+            for (Entry entry : byTime) {
+                pw.println();
+                pw.println("[entry]");
+                pw.println("file=" + entry.path);
+                pw.println("length=" + entry.length);
+                pw.println("modified=" + entry.modified);
+                pw.println("format=" + entry.format.name().toLowerCase());
+                pw.println("name=" + entry.name);
+                pw.println("timestamp=" + entry.timestamp);
+                pw.println("frames=" + entry.frames);
+                pw.println("channels=" + entry.channels);
+                pw.println("dataOffset=" + entry.dataOffset);
+                for (Map.Entry<String, Object> e : entry.parameters.entrySet()) {
+                    pw.println(PARAM_PREFIX + e.getKey() + "=" + e.getValue());
+                }
+            }
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void sortByTime() {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort(Comparator.comparingLong((Entry e) -> e.timestamp)
+                              .thenComparing(e -> e.path));
+        byTime = sorted;
+    }
+
+    // ---------- HEADERS ----------
+
+    // Entry for a measurement file, null if the file is not one
+    private Entry index(File file, String path, long length, long modified) throws IOException {
+
+        String fallbackName = file.getName().replaceFirst("\\.[^.]*$", "");
+
+        if (MeasurementFile.isBinary(file.getPath())) {
+            try (MeasurementFile f = MeasurementFile.open(file.getPath())) {
+                String name = f.getName() != null ? f.getName() : fallbackName;
+                return new Entry(file, path, length, modified,
+                                 f.isCompressed() ? Format.COMPRESSED : Format.BINARY, name,
+                                 startTime(f.getFirstTimestamp(), name, modified),
+                                 f.size(), f.getChannels(), f.getDataOffset(), f.getParameters());
+            }
+        }
+
+        if (MeasurementJournal.isJournal(file.getPath())) {
+            MeasurementJournal.Header h = MeasurementJournal.readHeader(file);
+            String name = h.name != null ? h.name : fallbackName;
+            return new Entry(file, path, length, modified, Format.JOURNAL, name,
+                             startTime(h.firstTimestamp, name, modified),
+                             h.frames, h.channels, h.dataOffset, h.parameters);
+        }
+
+        if (isText(file)) {
+            return indexText(file, path, length, modified, fallbackName);
+        }
+        return null;
+    }
+
+    private static boolean isText(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] head = new byte[TEXT_HEADER.length];
+            return in.readNBytes(head, 0, head.length) == head.length
+                && Arrays.equals(head, TEXT_HEADER);
+        }
+    }
+
+    // Text as written by MeasurementSet.saveToFile(). Has no row count in its
+    // header, so the data lines are counted, as bytes without parsing numbers.
+    private Entry indexText(File file, String path, long length, long modified,
+                            String fallbackName) throws IOException {
+
+        String name = null;
+        Map<String, Object> parameters = new HashMap<>();
+        String section = "";
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        long offset = 0;
+        long dataOffset = -1;
+        long frames = 0;
+        int channels = 0;
+        int commas = 0;
+        boolean content = false;     // current data line is not blank
+
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    byte b = buffer[i];
+                    offset++;
+
+                    if (dataOffset >= 0) {
+                        if (b == '\n') {
+                            if (content && ++frames == 1) channels = commas + 1;
+                            content = false;
+                            commas = 0;
+                        } else if (b == ',') {
+                            commas++;
+                        } else if (b > ' ') {
+                            content = true;
+                        }
+                        continue;
+                    }
+
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+                    String text = line.toString(StandardCharsets.UTF_8).trim();
+                    line.reset();
+
+                    if (text.equals("[param]")) {
+                        section = "param";
+                    } else if (text.equals("[data]")) {
+                        dataOffset = offset;
+                    } else if (text.startsWith("name=")) {
+                        name = text.substring(5);
+                    } else if (section.equals("param")) {
+                        String[] parts = text.split("=", 2);
+                        if (parts.length == 2) parameters.put(parts[0], parts[1]);
+                    }
+                }
+            }
+        }
+        if (content && ++frames == 1) channels = commas + 1;   // no final newline
+
+        if (name == null) name = fallbackName;
+        return new Entry(file, path, length, modified, Format.TEXT, name,
+                         startTime(0, name, modified), frames, channels,
+                         Math.max(dataOffset, 0), parameters);
+    }
+
+    // First frame time if the file has one, else the time in the name, else the
+    // modification time
+    private static long startTime(long firstTimestamp, String name, long modified) {
+        if (firstTimestamp > 0) return firstTimestamp;
+
+        Matcher m = NAME_TIME.matcher(name);
+        if (m.find()) {
+            try {
+                return LocalDateTime.parse(m.group(1), NAME_TIME_FORMAT)
+                                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                // not a time after all
+            }
+        }
+        return modified;
+    }
+
+    // ---------- QUERY ----------
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public synchronized int size() {
+        return byTime.size();
+    }
+
+    // Matching entries, oldest first. The time range is found by binary search,
+    // the other conditions are checked on the entries in it.
+    public synchronized List<Entry> query(Query query) {
+
+        int from = firstAtOrAfter(query.from);
+        int to = query.to == Long.MAX_VALUE ? byTime.size() : firstAtOrAfter(query.to + 1);
+
+        List<Entry> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Entry entry = byTime.get(i);
+            if (query.matches(entry)) result.add(entry);
+        }
+        return result;
+    }
+
+    private int firstAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = byTime.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (byTime.get(mid).timestamp < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // ---------- HELPER CLASSES ----------
+
+    public static class Entry {
+        public final File file;
+        public final String path;           // relative to the catalog directory
+        public final long length;
+        public final long modified;
+        public final Format format;
+        public final String name;
+        public final long timestamp;        // start of the run, ms since the epoch
+        public final long frames;
+        public final int channels;
+        public final long dataOffset;
+        public final Map<String, Object> parameters;
+
+        Entry(File file, String path, long length, long modified, Format format, String name,
+              long timestamp, long frames, int channels, long dataOffset,
+              Map<String, Object> parameters) {
+            this.file = file;
+            this.path = path;
+            this.length = length;
+            this.modified = modified;
+            this.format = format;
+            this.name = name;
+            this.timestamp = timestamp;
+            this.frames = frames;
+            this.channels = channels;
+            this.dataOffset = dataOffset;
+            this.parameters = Collections.unmodifiableMap(parameters);
+        }
+
+        // Reads the whole measurement
+        public MeasurementSet load() throws IOException {
+            return MeasurementSet.loadFromFile(file.getPath());
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + frames + " frames, " + path + ")";
+        }
+    }
+
+    // Conditions that all have to hold; an empty query matches everything
+    public static class Query {
+        private long from = Long.MIN_VALUE;
+        private long to = Long.MAX_VALUE;
+        private String namePrefix;
+        private final Map<String, String> parameters = new HashMap<>();
+
+        // Runs started from (inclusive) to to (inclusive), ms since the epoch
+        public Query between(long from, long to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        public Query namePrefix(String prefix) {
+            this.namePrefix = prefix;
+            return this;
+        }
+
+        // Parameter value compared as text, e.g. with("gain", "16")
+        public Query with(String key, Object value) {
+            parameters.put(key, String.valueOf(value));
+            return this;
+        }
+
+        boolean matches(Entry entry) {
+            if (namePrefix != null && !entry.name.startsWith(namePrefix)) return false;
+            for (Map.Entry<String, String> p : parameters.entrySet()) {
+                Object value = entry.parameters.get(p.getKey());
+                if (value == null || !String.valueOf(value).equals(p.getValue())) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,553 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// Binary container for a MeasurementSet, read through memory mapping so opening
+// costs only the header and rows are paged in when a slice is read.
+//
+// Layout, little-endian:
+//   0   magic "MSET"
+//   4   version (uint16)
+//   6   flags (uint16), bit 0 = float32 columns
+//   8   channels (uint32)
+//   12  rows (int64)
+//   20  metadata length (uint32)
+//   24  metadata, UTF-8: "name=..." and the [param] section as in the text format
+//   ..  zero padding to a multiple of 8
+//   ..  timestamps, rows x int64 (ms since the epoch, 0 = unknown)
+//   ..  channel columns one after the other, rows x float64 (or float32)
+//   end CRC32 (uint32) of everything before it
+//
+// Version 2 files are compressed: after the padding come the timestamp block
+// and one block per channel as encoded by ColumnCodec, then a directory of
+// (offset, length) int64 pairs for those blocks, then the CRC32. Blocks are
+// written and read one value at a time, never inflated as a whole.
+public class MeasurementFile implements Closeable {
+
+    public static final String EXTENSION = ".msb";
+
+    private static final byte[] MAGIC = {'M', 'S', 'E', 'T'};
+    private static final int VERSION = 1;
+    private static final int VERSION_COMPRESSED = 2;
+    private static final int FLAG_FLOAT32 = 1;
+    private static final int FIXED_HEADER = 24;
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private final FileChannel channel;
+    private final boolean singlePrecision;
+    private final int channels;
+    private final int rows;
+    private final long dataStart;
+    private final String name;
+    private final Map<String, Object> parameters;
+
+    // Compressed files: timestamp block, then one block per channel
+    private final long[] blockOffsets;
+    private final long[] blockLengths;
+
+    public interface RowHandler {
+        void onRow(long timestamp, double[] values) throws IOException;
+    }
+
+    private MeasurementFile(FileChannel channel, boolean singlePrecision, int channels, int rows,
+                            long dataStart, String name, Map<String, Object> parameters,
+                            long[] blockOffsets, long[] blockLengths) {
+        this.channel = channel;
+        this.singlePrecision = singlePrecision;
+        this.channels = channels;
+        this.rows = rows;
+        this.dataStart = dataStart;
+        this.name = name;
+        this.parameters = parameters;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+    }
+
+    // ---------- OPEN ----------
+
+    public static boolean isBinary(String filename) throws IOException {
+        try (InputStream in = new FileInputStream(filename)) {
+            byte[] head = new byte[MAGIC.length];
+            return in.readNBytes(head, 0, head.length) == head.length && Arrays.equals(head, MAGIC);
+        }
+    }
+
+    // Reads the header only; the data is not touched until read() or verify()
+    public static MeasurementFile open(String filename) throws IOException {
+
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) != FIXED_HEADER) {
+                throw new IOException("Not a measurement file: " + filename);
+            }
+            header.flip();
+
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a measurement file: " + filename);
+            }
+            int version = header.getShort() & 0xFFFF;
+            if (version != VERSION && version != VERSION_COMPRESSED) {
+                throw new IOException("Unsupported measurement file version " + version);
+            }
+            boolean float32 = (header.getShort() & FLAG_FLOAT32) != 0;
+            long channels = header.getInt() & 0xFFFFFFFFL;
+            long rows = header.getLong();
+            int metaLength = header.getInt();
+
+            int elementSize = float32 ? 4 : 8;
+            long dataStart = align8(FIXED_HEADER + (long) metaLength);
+            if (rows < 0 || rows > Integer.MAX_VALUE || metaLength < 0 || channels > 1024) {
+                throw new IOException("Truncated or corrupt measurement file: " + filename);
+            }
+
+            long[] blockOffsets = null;
+            long[] blockLengths = null;
+            if (version == VERSION_COMPRESSED) {
+                int blocks = (int) channels + 1;
+                long directory = channel.size() - 4 - 16L * blocks;
+                if (directory < dataStart) {
+                    throw new IOException("Truncated or corrupt measurement file: " + filename);
+                }
+                ByteBuffer dir = ByteBuffer.allocate(16 * blocks).order(ByteOrder.LITTLE_ENDIAN);
+                channel.read(dir, directory);
+                dir.flip();
+                blockOffsets = new long[blocks];
+                blockLengths = new long[blocks];
+                for (int b = 0; b < blocks; b++) {
+                    blockOffsets[b] = dir.getLong();
+                    blockLengths[b] = dir.getLong();
+                    if (blockOffsets[b] < dataStart || blockLengths[b] < 0
+                            || blockOffsets[b] + blockLengths[b] > directory) {
+                        throw new IOException("Truncated or corrupt measurement file: " + filename);
+                    }
+                }
+            } else if (channel.size() != dataStart + rows * 8 + channels * rows * elementSize + 4) {
+                throw new IOException("Truncated or corrupt measurement file: " + filename);
+            }
+
+            ByteBuffer meta = ByteBuffer.allocate(metaLength);
+            channel.read(meta, FIXED_HEADER);
+
+            Map<String, Object> parameters = new HashMap<>();
+            String name = parseMetadata(meta.array(), parameters);
+
+            return new MeasurementFile(channel, float32, (int) channels, (int) rows,
+                                       dataStart, name, parameters, blockOffsets, blockLengths);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // "name=..." and the [param] section, also used by MeasurementJournal
+    static byte[] metadata(String name, Map<String, Object> parameters) {
+        StringBuilder meta = new StringBuilder();
+        if (name != null) {
+            meta.append("name=").append(name).append('\n');
+        }
+        meta.append("[param]\n");
+        for (Map.Entry<String, Object> e : parameters.entrySet()) {
+            meta.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+        return meta.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Fills parameters (as strings, like the text format) and returns the name
+    static String parseMetadata(byte[] metadata, Map<String, Object> parameters) {
+        String name = null;
+        boolean inParams = false;
+        for (String line : new String(metadata, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isEmpty()) continue;
+            if (line.equals("[param]")) {
+                inParams = true;
+                continue;
+            }
+            String[] parts = line.split("=", 2);
+            if (parts.length != 2) continue;
+            if (inParams) {
+                parameters.put(parts[0], parts[1]);
+            } else if (parts[0].equals("name")) {
+                name = parts[1];
+            }
+        }
+        return name;
+    }
+
+    private static long align8(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ---------- ACCESS ----------
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, Object> getParameters() {
+        return new HashMap<>(parameters);
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    public boolean isCompressed() {
+        return blockOffsets != null;
+    }
+
+    // Where the columns (or the compressed blocks) start
+    public long getDataOffset() {
+        return dataStart;
+    }
+
+    // Time of the first row, read without mapping the data; 0 when there is none
+    public long getFirstTimestamp() throws IOException {
+        if (rows == 0) return 0;
+
+        // A compressed timestamp block starts with the first time as a varint
+        int length = isCompressed() ? (int) Math.min(10, blockLengths[0]) : 8;
+        ByteBuffer first = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(first, isCompressed() ? blockOffsets[0] : dataStart);
+        first.flip();
+        return isCompressed()
+            ? new ColumnCodec.TimestampDecoder(first).next()
+            : first.getLong();
+    }
+
+    // Whole file, checksum verified
+    public MeasurementSet readAll() throws IOException {
+        verify();
+        return read(0, rows);
+    }
+
+    // Rows from (inclusive) to to (exclusive); only their pages are mapped and read
+    public MeasurementSet read(int from, int to) throws IOException {
+
+        if (from < 0 || to > rows || from > to) {
+            throw new IndexOutOfBoundsException("Rows " + from + ".." + to + ", size " + rows);
+        }
+        int n = to - from;
+        int elementSize = singlePrecision ? 4 : 8;
+
+        long[] timestamps = new long[n];
+        double[][] columns = singlePrecision ? null : new double[channels][n];
+        float[][] floatColumns = singlePrecision ? new float[channels][n] : null;
+
+        if (isCompressed()) {
+            int[] row = {0};
+            forEachRow(from, to, (timestamp, values) -> {
+                timestamps[row[0]] = timestamp;
+                for (int c = 0; c < channels; c++) {
+                    if (singlePrecision) {
+                        floatColumns[c][row[0]] = (float) values[c];
+                    } else {
+                        columns[c][row[0]] = values[c];
+                    }
+                }
+                row[0]++;
+            });
+            return toSet(timestamps, columns, floatColumns, n);
+        }
+
+        map(dataStart + (long) from * 8, (long) n * 8).asLongBuffer().get(timestamps);
+
+        long columnsStart = dataStart + (long) rows * 8;
+        for (int c = 0; c < channels; c++) {
+            long offset = columnsStart + ((long) c * rows + from) * elementSize;
+            ByteBuffer region = map(offset, (long) n * elementSize);
+            if (singlePrecision) {
+                region.asFloatBuffer().get(floatColumns[c]);
+            } else {
+                region.asDoubleBuffer().get(columns[c]);
+            }
+        }
+
+        return toSet(timestamps, columns, floatColumns, n);
+    }
+
+    private MeasurementSet toSet(long[] timestamps, double[][] columns, float[][] floatColumns,
+                                 int n) {
+        MeasurementSet set = new MeasurementSet(singlePrecision);
+        set.setName(name);
+        set.setParameters(parameters);
+        set.setColumns(timestamps, columns, floatColumns, n);
+        return set;
+    }
+
+    // Streams rows from (inclusive) to to (exclusive) through handler, with one
+    // reused values array and without loading the columns into memory
+    public void forEachRow(int from, int to, RowHandler handler) throws IOException {
+
+        if (from < 0 || to > rows || from > to) {
+            throw new IndexOutOfBoundsException("Rows " + from + ".." + to + ", size " + rows);
+        }
+        double[] values = new double[channels];
+
+        if (!isCompressed()) {
+            int elementSize = singlePrecision ? 4 : 8;
+            long columnsStart = dataStart + (long) rows * 8;
+            ByteBuffer timestamps = map(dataStart, (long) rows * 8);
+            ByteBuffer[] columns = new ByteBuffer[channels];
+            for (int c = 0; c < channels; c++) {
+                columns[c] = map(columnsStart + (long) c * rows * elementSize,
+                                 (long) rows * elementSize);
+            }
+            for (int r = from; r < to; r++) {
+                for (int c = 0; c < channels; c++) {
+                    values[c] = singlePrecision
+                        ? columns[c].getFloat(r * 4)
+                        : columns[c].getDouble(r * 8);
+                }
+                handler.onRow(timestamps.getLong(r * 8), values);
+            }
+            return;
+        }
+
+        // Each block is decoded from its start; rows before from are skipped
+        ColumnCodec.TimestampDecoder times =
+            new ColumnCodec.TimestampDecoder(map(blockOffsets[0], blockLengths[0]));
+        ColumnCodec.ValueDecoder[] decoders = new ColumnCodec.ValueDecoder[channels];
+        for (int c = 0; c < channels; c++) {
+            decoders[c] = new ColumnCodec.ValueDecoder(
+                map(blockOffsets[c + 1], blockLengths[c + 1]));
+        }
+        for (int r = 0; r < to; r++) {
+            long timestamp = times.next();
+            for (int c = 0; c < channels; c++) {
+                values[c] = decoders[c].next();
+            }
+            if (r >= from) {
+                handler.onRow(timestamp, values);
+            }
+        }
+    }
+
+    // Checks the CRC32 over the whole file
+    public void verify() throws IOException {
+
+        long end = channel.size() - 4;
+        CRC32 crc = new CRC32();
+        for (long position = 0; position < end; position += Integer.MAX_VALUE) {
+            crc.update(map(position, Math.min(Integer.MAX_VALUE, end - position)));
+        }
+
+        ByteBuffer stored = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(stored, end);
+        stored.flip();
+        if ((stored.getInt() & 0xFFFFFFFFL) != crc.getValue()) {
+            throw new IOException("Checksum mismatch, measurement file is corrupt");
+        }
+    }
+
+    private ByteBuffer map(long position, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Slice too large to map: " + length + " bytes");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    // ---------- WRITE ----------
+
+    public static void write(MeasurementSet set, String filename) throws IOException {
+        write(set, filename, false);
+    }
+
+    // compress: version 2 layout, every column encoded by ColumnCodec
+    public static void write(MeasurementSet set, String filename, boolean compress)
+            throws IOException {
+
+        byte[] metadata = metadata(set.getName(), set.getParameters());
+
+        int rows = set.size();
+        int channels = set.getChannels();
+        boolean float32 = set.isSinglePrecision();
+
+        try (FileChannel out = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            Writer w = new Writer(out);
+
+            ByteBuffer buf = w.buffer;
+            buf.put(MAGIC);
+            buf.putShort((short) (compress ? VERSION_COMPRESSED : VERSION));
+            buf.putShort((short) (float32 ? FLAG_FLOAT32 : 0));
+            buf.putInt(channels);
+            buf.putLong(rows);
+            buf.putInt(metadata.length);
+            w.put(metadata);
+            w.pad((int) (align8(FIXED_HEADER + (long) metadata.length)
+                         - FIXED_HEADER - metadata.length));
+
+            if (compress) {
+                writeCompressed(set, w);
+            } else {
+                writeColumns(set, w);
+            }
+
+            w.flush();
+            ByteBuffer crc = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            crc.putInt((int) w.crc.getValue());
+            crc.flip();
+            while (crc.hasRemaining()) out.write(crc);
+        }
+    }
+
+    private static void writeColumns(MeasurementSet set, Writer w) throws IOException {
+
+        ByteBuffer buf = w.buffer;
+        int rows = set.size();
+
+        long[] timestamps = set.timestampArray();
+        for (int r = 0; r < rows; r++) {
+            w.ensure(8);
+            buf.putLong(timestamps[r]);
+        }
+
+        for (int c = 0; c < set.getChannels(); c++) {
+            if (set.isSinglePrecision()) {
+                float[] column = set.floatColumnArray(c);
+                for (int r = 0; r < rows; r++) {
+                    w.ensure(4);
+                    buf.putFloat(column[r]);
+                }
+            } else {
+                double[] column = set.columnArray(c);
+                for (int r = 0; r < rows; r++) {
+                    w.ensure(8);
+                    buf.putDouble(column[r]);
+                }
+            }
+        }
+    }
+
+    // Blocks go straight to the file as they are encoded, the directory follows them
+    private static void writeCompressed(MeasurementSet set, Writer w) throws IOException {
+
+        int channels = set.getChannels();
+        long[] offsets = new long[channels + 1];
+        long[] lengths = new long[channels + 1];
+
+        offsets[0] = w.position();
+        ColumnCodec.encodeTimestamps(set.timestampArray(), set.size(), w);
+        lengths[0] = w.position() - offsets[0];
+
+        for (int c = 0; c < channels; c++) {
+            offsets[c + 1] = w.position();
+            ColumnCodec.encodeColumn(set.getColumn(c), w);
+            lengths[c + 1] = w.position() - offsets[c + 1];
+        }
+
+        for (int b = 0; b <= channels; b++) {
+            w.ensure(16);
+            w.buffer.putLong(offsets[b]);
+            w.buffer.putLong(lengths[b]);
+        }
+    }
+
+    // ---------- CONVERSION ----------
+
+    // Between text, binary, compressed binary and journals; the target format
+    // follows its extension (binary for .msb, text otherwise)
+    public static void convert(String source, String target) throws IOException {
+        convert(source, target, false);
+    }
+
+    public static void convert(String source, String target, boolean compress)
+            throws IOException {
+        MeasurementSet set = MeasurementSet.loadFromFile(source);
+        if (target.toLowerCase().endsWith(EXTENSION)) {
+            write(set, target, compress);
+        } else {
+            set.saveToFile(target);
+        }
+    }
+
+    // java MeasurementFile [-z] <source> <target>
+    public static void main(String[] args) throws IOException {
+        boolean compress = args.length == 3 && args[0].equals("-z");
+        if (args.length != (compress ? 3 : 2)) {
+            System.err.println("Usage: MeasurementFile [-z] <source> <target>");
+            System.err.println("Writes binary when target ends with " + EXTENSION + ", text otherwise;");
+            System.err.println("-z compresses the binary columns");
+            System.exit(1);
+        }
+        int i = compress ? 1 : 0;
+        convert(args[i], args[i + 1], compress);
+    }
+
+    // ---------- HELPER CLASS ----------
+
+    // Buffered channel output with a running CRC32
+    private static class Writer extends OutputStream {
+        final FileChannel out;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        final CRC32 crc = new CRC32();
+        long flushed = 0;
+
+        Writer(FileChannel out) {
+            this.out = out;
+        }
+
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensure(1);
+            buffer.put((byte) b);
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        void put(byte[] data) throws IOException {
+            int offset = 0;
+            while (offset < data.length) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), data.length - offset);
+                buffer.put(data, offset, n);
+                offset += n;
+            }
+        }
+
+        void pad(int bytes) throws IOException {
+            put(new byte[bytes]);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushed += buffer.position();
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) out.write(buffer);
+            buffer.clear();
+        }
+    }
+}
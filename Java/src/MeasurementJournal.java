@@ -0,0 +1,373 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+// Append-only file of the frames of one run, written while they are acquired so
+// a crash or USB drop loses at most the last sync interval. Frames collect in a
+// buffer that a background thread writes and fsyncs every syncIntervalMs (group
+// commit); a full buffer is written by the appending thread itself.
+//
+// Layout, little-endian:
+//   0   magic "MSJR"
+//   4   version (uint16)
+//   6   state (uint8), 0 = open, 1 = closed cleanly
+//   7   reserved
+//   8   channels (uint32)
+//   12  metadata length (uint32)
+//   16  metadata, UTF-8, as in MeasurementFile
+//   ..  records: timestamp (int64, ms since the epoch), channels x float64,
+//       CRC32 (uint32) of the timestamp and values
+//
+// A journal still marked open was not closed by its run. recover() keeps every
+// complete record, cuts off a torn last one and marks the journal closed.
+public class MeasurementJournal implements Closeable {
+
+    public static final String EXTENSION = ".msj";
+
+    private static final byte[] MAGIC = {'M', 'S', 'J', 'R'};
+    private static final int VERSION = 1;
+    private static final int STATE_OFFSET = 6;
+    private static final byte STATE_OPEN = 0;
+    private static final byte STATE_CLOSED = 1;
+    private static final int FIXED_HEADER = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_NAME_SUFFIX = 1000;
+
+    private static final ScheduledExecutorService SYNC =
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-sync");
+            t.setDaemon(true);
+            return t;
+        });
+
+    private final FileChannel channel;
+    private final int channels;
+    private final int recordSize;
+
+    private final ByteBuffer buffer =
+        ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private final ScheduledFuture<?> syncTask;
+
+    private boolean dirty = false;     // written since the last fsync
+    private volatile boolean closed = false;
+
+    private MeasurementJournal(FileChannel channel, int channels, long syncIntervalMs) {
+        this.channel = channel;
+        this.channels = channels;
+        this.recordSize = 8 + channels * 8 + 4;
+
+        syncTask = syncIntervalMs > 0
+            ? SYNC.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMs, syncIntervalMs,
+                                          TimeUnit.MILLISECONDS)
+            : null;
+    }
+
+    // ---------- WRITE ----------
+
+    // New journal <directory>/<name>.msj, or <name>_2.msj etc. if two runs
+    // start within the same second; syncIntervalMs 0 = only on close()
+    public static MeasurementJournal create(File directory, String name,
+                                            Map<String, Object> parameters,
+                                            int channels, long syncIntervalMs)
+            throws IOException {
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+
+        FileChannel channel = null;
+        for (int suffix = 1; channel == null; suffix++) {
+            File file = new File(directory, (suffix == 1 ? name : name + "_" + suffix) + EXTENSION);
+            try {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE_NEW);
+            } catch (FileAlreadyExistsException e) {
+                if (suffix == MAX_NAME_SUFFIX) throw e;
+            }
+        }
+        try {
+            byte[] metadata = MeasurementFile.metadata(name, parameters);
+            ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER + metadata.length)
+                                          .order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC);
+            header.putShort((short) VERSION);
+            header.put(STATE_OPEN);
+            header.put((byte) 0);
+            header.putInt(channels);
+            header.putInt(metadata.length);
+            header.put(metadata);
+            header.flip();
+            while (header.hasRemaining()) channel.write(header);
+
+            // The run exists on disk before its first frame
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new MeasurementJournal(channel, channels, syncIntervalMs);
+    }
+
+    public synchronized void append(long timestamp, double[] values) throws IOException {
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+        if (buffer.remaining() < recordSize) {
+            writeBuffer();
+        }
+
+        int start = buffer.position();
+        buffer.putLong(timestamp);
+        for (int c = 0; c < channels; c++) {
+            buffer.putDouble(values[c]);
+        }
+        crc.reset();
+        crc.update(buffer.duplicate().position(start).limit(buffer.position()));
+        buffer.putInt((int) crc.getValue());
+    }
+
+    // Writes buffered frames and forces them to disk
+    private void sync() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            writeBuffer();
+            if (!dirty) return;
+            dirty = false;
+        }
+        // Outside the lock, appends go on while the disk catches up
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            if (!closed) throw e;   // close() synced it already
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        if (buffer.hasRemaining()) dirty = true;
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    // Syncs and marks the journal as complete
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            if (syncTask != null) syncTask.cancel(false);
+
+            try {
+                writeBuffer();
+                channel.force(false);
+                markClosed(channel);
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+
+    private static void markClosed(FileChannel channel) throws IOException {
+        channel.write(ByteBuffer.wrap(new byte[]{STATE_CLOSED}), STATE_OFFSET);
+        channel.force(false);
+    }
+
+    // ---------- READ ----------
+
+    public static boolean isJournal(String filename) throws IOException {
+        try (InputStream in = new FileInputStream(filename)) {
+            byte[] head = new byte[MAGIC.length];
+            return in.readNBytes(head, 0, head.length) == head.length && Arrays.equals(head, MAGIC);
+        }
+    }
+
+    // Journals in directory that were never closed, i.e. runs cut short by a crash
+    public static List<File> findUnfinished(File directory) throws IOException {
+        List<File> result = new ArrayList<>();
+        File[] files = directory.listFiles((dir, n) -> n.endsWith(EXTENSION));
+        if (files == null) return result;
+
+        Arrays.sort(files);
+        for (File f : files) {
+            try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+                byte[] head = new byte[FIXED_HEADER];
+                if (raf.read(head) == FIXED_HEADER
+                        && Arrays.equals(Arrays.copyOf(head, MAGIC.length), MAGIC)
+                        && head[STATE_OFFSET] == STATE_OPEN) {
+                    result.add(f);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Every complete frame, whether or not the journal was closed
+    public static MeasurementSet read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return readRecords(channel, file).set;
+        }
+    }
+
+    // Keeps what a crashed run got onto disk, drops a partly written last frame
+    // and marks the journal closed so it is not recovered twice
+    public static MeasurementSet recover(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Contents contents = readRecords(channel, file);
+            if (contents.validEnd < channel.size()) {
+                channel.truncate(contents.validEnd);
+            }
+            markClosed(channel);
+            return contents.set;
+        }
+    }
+
+    // Header of a journal and its number of complete frames, without reading them
+    public static Header readHeader(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return readHeader(channel, file);
+        }
+    }
+
+    private static Header readHeader(FileChannel channel, File file) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        header.flip();
+
+        byte[] magic = new byte[MAGIC.length];
+        if (header.remaining() < FIXED_HEADER) {
+            throw new IOException("Not a measurement journal: " + file);
+        }
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a measurement journal: " + file);
+        }
+        int version = header.getShort() & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported journal version " + version);
+        }
+        byte state = header.get();
+        header.get();
+        int channels = header.getInt();
+        int metaLength = header.getInt();
+        // Limits as in MeasurementFile, so a damaged header can neither allocate
+        // a huge metadata buffer nor overflow the record size
+        if (channels < 0 || channels > 1024 || metaLength < 0
+                || FIXED_HEADER + (long) metaLength > channel.size()) {
+            throw new IOException("Corrupt measurement journal: " + file);
+        }
+
+        ByteBuffer meta = ByteBuffer.allocate(metaLength);
+        channel.read(meta, FIXED_HEADER);
+        Map<String, Object> parameters = new HashMap<>();
+        String name = MeasurementFile.parseMetadata(meta.array(), parameters);
+
+        long dataOffset = FIXED_HEADER + (long) metaLength;
+        long frames = Math.max(0, (channel.size() - dataOffset) / (8 + channels * 8 + 4));
+
+        long firstTimestamp = 0;
+        if (frames > 0) {
+            ByteBuffer first = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(first, dataOffset);
+            firstTimestamp = first.getLong(0);
+        }
+        return new Header(name, parameters, channels, frames, dataOffset, firstTimestamp,
+                          state == STATE_CLOSED);
+    }
+
+    private static Contents readRecords(FileChannel channel, File file) throws IOException {
+
+        Header header = readHeader(channel, file);
+        int channels = header.channels;
+
+        MeasurementSet set = new MeasurementSet();
+        set.setName(header.name);
+        set.setParameters(header.parameters);
+
+        int recordSize = 8 + channels * 8 + 4;
+        ByteBuffer chunk = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, recordSize))
+                                     .order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        double[] values = new double[channels];
+
+        long position = header.dataOffset;
+        long validEnd = position;
+        boolean intact = true;
+
+        // Leftover bytes of a record split across reads stay in the chunk
+        int n;
+        while (intact && (n = channel.read(chunk, position)) > 0) {
+            position += n;
+            chunk.flip();
+
+            while (chunk.remaining() >= recordSize) {
+                int start = chunk.position();
+                crc.reset();
+                crc.update(chunk.duplicate().limit(start + recordSize - 4));
+
+                long timestamp = chunk.getLong();
+                for (int c = 0; c < channels; c++) {
+                    values[c] = chunk.getDouble();
+                }
+                if ((chunk.getInt() & 0xFFFFFFFFL) != crc.getValue()) {
+                    intact = false;
+                    break;
+                }
+                set.addMeasurement(timestamp, values);
+                validEnd += recordSize;
+            }
+            chunk.compact();
+        }
+        return new Contents(set, validEnd);
+    }
+
+    // ---------- HELPER CLASSES ----------
+
+    public static class Header {
+        public final String name;
+        public final Map<String, Object> parameters;
+        public final int channels;
+        public final long frames;           // complete frames, checksums not verified
+        public final long dataOffset;
+        public final long firstTimestamp;   // 0 when there are no frames yet
+        public final boolean closed;
+
+        Header(String name, Map<String, Object> parameters, int channels, long frames,
+               long dataOffset, long firstTimestamp, boolean closed) {
+            this.name = name;
+            this.parameters = parameters;
+            this.channels = channels;
+            this.frames = frames;
+            this.dataOffset = dataOffset;
+            this.firstTimestamp = firstTimestamp;
+            this.closed = closed;
+        }
+    }
+
+    private static class Contents {
+        final MeasurementSet set;
+        final long validEnd;
+
+        Contents(MeasurementSet set, long validEnd) {
+            this.set = set;
+            this.validEnd = validEnd;
+        }
+    }
+}
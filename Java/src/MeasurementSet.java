@@ -1,14 +1,33 @@
 import java.util.*;
 import java.io.*;
 
+// Readings are stored column-wise: one primitive array per channel plus a
+// timestamp column, grown by half their size at a time. Single precision halves the memory of
+// long runs; values are then rounded to float when added.
 public class MeasurementSet {
 
-    private List<double[]> measurements;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final boolean singlePrecision;
+    private int channels = 0;             // fixed by the first measurement
+    private int size = 0;
+    private long[] timestamps;
+    private double[][] columns;           // double precision
+    private float[][] floatColumns;       // single precision
+    private double[] stored;              // one row as stored, for the statistics
+
     private HashMap<String, Object> parameters;
     private String name;
 
+    // Kept up to date by addMeasurement(); null while empty
+    private RunningStatistics statistics;
+
     public MeasurementSet() {
-        measurements = new ArrayList<>();
+        this(false);
+    }
+
+    public MeasurementSet(boolean singlePrecision) {
+        this.singlePrecision = singlePrecision;
         parameters = new HashMap<>();
     }
 
@@ -34,61 +53,279 @@ public class MeasurementSet {
     // ---------- MEASUREMENTS ----------
 
     public void addMeasurement(double[] measurement) {
-        measurements.add(measurement);
+        addMeasurement(System.currentTimeMillis(), measurement);
+    }
+
+    // timestamp in ms since the epoch, 0 when unknown
+    public void addMeasurement(long timestamp, double[] measurement) {
+
+        if (size == 0 && channels == 0) {
+            allocate(measurement.length, INITIAL_CAPACITY);
+        } else if (measurement.length != channels) {
+            throw new IllegalArgumentException(
+                "Expected " + channels + " channels, got " + measurement.length);
+        }
+        ensureCapacity(size + 1);
+
+        timestamps[size] = timestamp;
+        if (singlePrecision) {
+            for (int c = 0; c < channels; c++) {
+                floatColumns[c][size] = (float) measurement[c];
+                stored[c] = floatColumns[c][size];
+            }
+            statistics.add(stored);
+        } else {
+            for (int c = 0; c < channels; c++) {
+                columns[c][size] = measurement[c];
+            }
+            statistics.add(measurement);
+        }
+        size++;
+    }
+
+    // Appends another set's measurements; its statistics are merged, not recomputed
+    public void addAll(MeasurementSet other) {
+        if (other.size == 0) return;
+
+        if (size == 0 && channels == 0) {
+            allocate(other.channels, Math.max(INITIAL_CAPACITY, other.size));
+        } else if (other.channels != channels) {
+            throw new IllegalArgumentException(
+                "Expected " + channels + " channels, got " + other.channels);
+        }
+        ensureCapacity(size + other.size);
+
+        System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+        for (int c = 0; c < channels; c++) {
+            if (singlePrecision && other.singlePrecision) {
+                System.arraycopy(other.floatColumns[c], 0, floatColumns[c], size, other.size);
+            } else if (!singlePrecision && !other.singlePrecision) {
+                System.arraycopy(other.columns[c], 0, columns[c], size, other.size);
+            } else {
+                for (int r = 0; r < other.size; r++) {
+                    set(c, size + r, other.get(c, r));
+                }
+            }
+        }
+        size += other.size;
+
+        if (singlePrecision && !other.singlePrecision) {
+            // Rounded on the way in, so the statistics have to see the stored values
+            statistics = new RunningStatistics(channels);
+            for (int r = 0; r < size; r++) {
+                statistics.add(getMeasurement(r));
+            }
+        } else {
+            statistics.merge(other.statistics);
+        }
+    }
+
+    private void allocate(int channels, int capacity) {
+        this.channels = channels;
+        timestamps = new long[capacity];
+        if (singlePrecision) {
+            floatColumns = new float[channels][capacity];
+        } else {
+            columns = new double[channels][capacity];
+        }
+        stored = new double[channels];
+        statistics = new RunningStatistics(channels);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= timestamps.length) return;
+
+        int capacity = Math.max(required, timestamps.length + timestamps.length / 2);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        for (int c = 0; c < channels; c++) {
+            if (singlePrecision) {
+                floatColumns[c] = Arrays.copyOf(floatColumns[c], capacity);
+            } else {
+                columns[c] = Arrays.copyOf(columns[c], capacity);
+            }
+        }
+    }
+
+    private double get(int channel, int row) {
+        return singlePrecision ? floatColumns[channel][row] : columns[channel][row];
+    }
+
+    private void set(int channel, int row, double value) {
+        if (singlePrecision) {
+            floatColumns[channel][row] = (float) value;
+        } else {
+            columns[channel][row] = value;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    // Copy of one row
+    public double[] getMeasurement(int row) {
+        checkRow(row);
+        double[] values = new double[channels];
+        for (int c = 0; c < channels; c++) {
+            values[c] = get(c, row);
+        }
+        return values;
+    }
+
+    public long getTimestamp(int row) {
+        checkRow(row);
+        return timestamps[row];
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+        }
+    }
+
+    // Zero-copy view of one channel as it is now; later rows are not visible through it
+    public Column getColumn(int channel) {
+        if (channel < 0 || channel >= channels) {
+            throw new IndexOutOfBoundsException("Channel " + channel + ", channels " + channels);
+        }
+        return singlePrecision
+            ? new Column(null, floatColumns[channel], size)
+            : new Column(columns[channel], null, size);
     }
 
+    // Row view for older callers; every get() copies a row, prefer getColumn()
     public List<double[]> getMeasurements() {
-        return measurements;
+        return new RowView();
     }
 
     public void clearMeasurements() {
-        measurements.clear();
+        clearData();
         name = null;
     }
 
     public void clearAll() {
-        measurements.clear();
+        clearData();
         parameters.clear();
         name = null;
     }
 
+    // Fresh arrays, so column views handed out earlier keep their data
+    private void clearData() {
+        size = 0;
+        channels = 0;
+        timestamps = null;
+        columns = null;
+        floatColumns = null;
+        statistics = null;
+    }
+
+
+    // ---------- RAW COLUMNS ----------
+
+    // For MeasurementFile: the backing arrays themselves, valid up to size()
+    long[] timestampArray() {
+        return timestamps;
+    }
+
+    double[] columnArray(int channel) {
+        return columns[channel];
+    }
+
+    float[] floatColumnArray(int channel) {
+        return floatColumns[channel];
+    }
+
+    // Takes over arrays filled elsewhere (double or float columns to match the
+    // precision) and rebuilds the statistics from them
+    void setColumns(long[] timestamps, double[][] columns, float[][] floatColumns, int size) {
+        clearData();
+        this.channels = singlePrecision ? floatColumns.length : columns.length;
+        this.size = size;
+        this.timestamps = timestamps;
+        this.columns = columns;
+        this.floatColumns = floatColumns;
+        this.stored = new double[channels];
+
+        statistics = new RunningStatistics(channels);
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < channels; c++) {
+                stored[c] = get(c, r);
+            }
+            statistics.add(stored);
+        }
+    }
+
 
     // ---------- STATISTICS ----------
 
+    // O(channels): read from the running statistics
     public StatisticsResult getAverageAndStd() {
 
-        if (measurements.isEmpty()) {
+        if (size == 0) {
             return new StatisticsResult(new double[0], new double[0]);
         }
 
-        int n = measurements.size();
-        int channels = measurements.get(0).length;
-
         double[] mean = new double[channels];
         double[] std = new double[channels];
+        double[] min = new double[channels];
+        double[] max = new double[channels];
 
-        // Mean
-        for (double[] m : measurements) {
-            for (int i = 0; i < channels; i++) {
-                mean[i] += m[i];
-            }
-        }
         for (int i = 0; i < channels; i++) {
-            mean[i] /= n;
+            mean[i] = statistics.getMean(i);
+            std[i] = statistics.getStd(i);
+            min[i] = statistics.getMin(i);
+            max[i] = statistics.getMax(i);
         }
+        return new StatisticsResult(mean, std, min, max);
+    }
 
-        // Standard deviation
-        for (double[] m : measurements) {
-            for (int i = 0; i < channels; i++) {
-                double diff = m[i] - mean[i];
-                std[i] += diff * diff;
-            }
+    // Statistics of rows from (inclusive) to to (exclusive), one pass per column
+    public StatisticsResult getAverageAndStd(int from, int to) {
+
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Rows " + from + ".." + to + ", size " + size);
         }
-        for (int i = 0; i < channels; i++) {
-            std[i] = Math.sqrt(std[i] / n);
+        if (from == 0 && to == size) {
+            return getAverageAndStd();
         }
 
-        return new StatisticsResult(mean, std);
+        int n = to - from;
+        double[] mean = new double[channels];
+        double[] std = new double[channels];
+        double[] min = new double[channels];
+        double[] max = new double[channels];
+
+        for (int c = 0; c < channels && n > 0; c++) {
+            Column column = getColumn(c);
+            double sum = 0;
+            double lo = Double.POSITIVE_INFINITY;
+            double hi = Double.NEGATIVE_INFINITY;
+            for (int r = from; r < to; r++) {
+                double v = column.get(r);
+                sum += v;
+                if (v < lo) lo = v;
+                if (v > hi) hi = v;
+            }
+            mean[c] = sum / n;
+
+            double m2 = 0;
+            for (int r = from; r < to; r++) {
+                double diff = column.get(r) - mean[c];
+                m2 += diff * diff;
+            }
+            std[c] = Math.sqrt(m2 / n);
+            min[c] = lo;
+            max[c] = hi;
+        }
+        return new StatisticsResult(mean, std, min, max);
     }
 
     // ---------- STRING OUTPUT ----------
@@ -126,9 +363,9 @@ public class MeasurementSet {
 
 
         sb.append("\nMeasurements:\n");
-        for (double[] m : measurements) {
-            for (double v : m) {
-                sb.append(String.format("%8.3f ", v));
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < channels; c++) {
+                sb.append(String.format("%8.3f ", get(c, r)));
             }
             sb.append("\n");
         }
@@ -154,19 +391,36 @@ public class MeasurementSet {
             pw.println();
 
             pw.println("[data]");
-            for (double[] m : measurements) {
-                for (int i = 0; i < m.length; i++) {
-                    pw.print(m[i]);
-                    if (i < m.length - 1) pw.print(",");
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < channels; c++) {
+                    // Float.toString keeps single precision values short and exact
+                    if (singlePrecision) {
+                        pw.print(floatColumns[c][r]);
+                    } else {
+                        pw.print(columns[c][r]);
+                    }
+                    if (c < channels - 1) pw.print(",");
                 }
                 pw.println();
             }
         }
     }
 
+    // Text as written by saveToFile(), the binary format of MeasurementFile or a
+    // MeasurementJournal. Every row is copied to the heap, binary files included;
+    // MeasurementFile.read() loads only a range of rows
     public static MeasurementSet loadFromFile(String filename)
             throws IOException {
 
+        if (MeasurementFile.isBinary(filename)) {
+            try (MeasurementFile file = MeasurementFile.open(filename)) {
+                return file.readAll();
+            }
+        }
+        if (MeasurementJournal.isJournal(filename)) {
+            return MeasurementJournal.read(new File(filename));
+        }
+
         MeasurementSet set = new MeasurementSet();
 
         try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
@@ -206,7 +460,11 @@ public class MeasurementSet {
                     for (int i = 0; i < parts.length; i++) {
                         values[i] = Double.parseDouble(parts[i]);
                     }
-                    set.addMeasurement(values);
+                    if (set.size > 0 && values.length != set.channels) {
+                        throw new IOException("Wrong data format: expected "
+                            + set.channels + " values per row, got " + values.length);
+                    }
+                    set.addMeasurement(0, values);   // time is not stored in the file
                 }
             }
         }
@@ -215,15 +473,67 @@ public class MeasurementSet {
     }
 
 
-    // ---------- HELPER CLASS ----------
+    // ---------- HELPER CLASSES ----------
+
+    // One channel, backed directly by the set's array
+    public static class Column {
+        private final double[] values;
+        private final float[] floatValues;
+        private final int size;
+
+        Column(double[] values, float[] floatValues, int size) {
+            this.values = values;
+            this.floatValues = floatValues;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public double get(int row) {
+            if (row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+            }
+            return values != null ? values[row] : floatValues[row];
+        }
+
+        public double[] toArray() {
+            double[] copy = new double[size];
+            for (int r = 0; r < size; r++) {
+                copy[r] = get(r);
+            }
+            return copy;
+        }
+    }
+
+    private class RowView extends AbstractList<double[]> implements RandomAccess {
+        @Override
+        public double[] get(int row) {
+            return getMeasurement(row);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
 
     public static class StatisticsResult {
         public final double[] mean;
         public final double[] std;
+        public final double[] min;     // null when not known
+        public final double[] max;
 
         public StatisticsResult(double[] mean, double[] std) {
+            this(mean, std, null, null);
+        }
+
+        public StatisticsResult(double[] mean, double[] std, double[] min, double[] max) {
             this.mean = mean;
             this.std = std;
+            this.min = min;
+            this.max = max;
         }
     }
 }
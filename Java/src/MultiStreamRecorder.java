@@ -0,0 +1,95 @@
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.Flow;
+
+// Records the merged stream of all devices of an AcquisitionManager into one
+// MeasurementSet per device. Frame times are monotonic (System.nanoTime); they
+// are mapped to wall clock ms against the moment the recorder was created.
+// Frames still in flight when stop() cancels the subscription are dropped.
+public class MultiStreamRecorder implements Flow.Subscriber<AcquisitionManager.DeviceFrame> {
+
+    private final AcquisitionManager manager;
+    private final String name;
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+
+    // Device name -> frames recorded so far
+    private final Map<String, MeasurementSet> sets = new LinkedHashMap<>();
+    private Flow.Subscription subscription;
+    private boolean stopped = false;
+    private long frames = 0;
+
+    public MultiStreamRecorder(AcquisitionManager manager, String baseName) {
+        this.manager = manager;
+        this.name = baseName + "_" + LocalDateTime.now().format(
+            DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
+    }
+
+    // ---------- RECORDING ----------
+
+    public void start(int capacity) throws Exception {
+        manager.getMergedStream().subscribe(this);
+        try {
+            manager.startStreams(capacity, SpectrumRingBuffer.OverflowPolicy.OVERWRITE);
+        } catch (Exception e) {
+            cancel();
+            throw e;
+        }
+    }
+
+    // Stops every device; returns the recorded sets by device name
+    public Map<String, MeasurementSet> stop() throws Exception {
+        try {
+            manager.stopStreams();
+        } finally {
+            cancel();
+        }
+        synchronized (this) {
+            return new LinkedHashMap<>(sets);
+        }
+    }
+
+    private synchronized void cancel() {
+        stopped = true;
+        if (subscription != null) subscription.cancel();
+    }
+
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    // ---------- SUBSCRIBER ----------
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (stopped) {
+            subscription.cancel();
+        } else {
+            subscription.request(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public synchronized void onNext(AcquisitionManager.DeviceFrame f) {
+        if (stopped) return;
+
+        MeasurementSet set = sets.get(f.deviceName);
+        if (set == null) {
+            set = new MeasurementSet();
+            set.setName(name);
+            set.setParameters(manager.getDevice(f.device).getParameters());
+            sets.put(f.deviceName, set);
+        }
+        long timestamp = startMillis + (f.frame.timestampNanos - startNanos) / 1_000_000;
+        set.addMeasurement(timestamp, f.frame.values.clone());
+        frames++;
+    }
+
+    @Override
+    public void onError(Throwable throwable) {}
+
+    @Override
+    public void onComplete() {}
+}
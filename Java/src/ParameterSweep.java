@@ -0,0 +1,278 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+// Unattended characterization run over gain x integration time x light intensity.
+// Points are ordered so the lamp, the slowest thing to change, is set once per
+// light level; gain and integration time only resend the device configuration.
+// Every point is measured in raw mode and kept as a MeasurementSet, and a
+// per-channel line of counts against integration time is fitted for each
+// (gain, light) pair on a separate thread while the next point is measured.
+public class ParameterSweep {
+
+    // AS726x raw counts
+    private static final double FULL_SCALE = 65535;
+    private static final double SATURATED = 0.98;
+
+    public interface Listener {
+        // Called on the sweep thread after each point, skipped ones included
+        void onPoint(Point point, int index, int total);
+    }
+
+    private final Spectrometer spectrometer;
+
+    private int[] gains = {1, 4, 16, 64};
+    private int[] integrationTimes = {10, 25, 50, 100, 150, 200, 255};
+    private int[] lightIntensities = {0, 25, 50, 75, 100};
+    private int measurementsPerPoint = 10;
+    private boolean adaptive = true;
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "parameter-sweep");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService fitter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sweep-fit");
+        t.setDaemon(true);
+        return t;
+    });
+    private Future<?> running;
+
+    public ParameterSweep(Spectrometer spectrometer) {
+        this.spectrometer = spectrometer;
+    }
+
+    // ---------- CONFIGURATION ----------
+
+    public ParameterSweep setGains(int... gains) {
+        this.gains = gains.clone();
+        return this;
+    }
+
+    public ParameterSweep setIntegrationTimes(int... integrationTimes) {
+        this.integrationTimes = integrationTimes.clone();
+        return this;
+    }
+
+    public ParameterSweep setLightIntensities(int... lightIntensities) {
+        this.lightIntensities = lightIntensities.clone();
+        return this;
+    }
+
+    public ParameterSweep setMeasurementsPerPoint(int measurementsPerPoint) {
+        this.measurementsPerPoint = Math.max(1, measurementsPerPoint);
+        return this;
+    }
+
+    // Adaptive: once a point saturates, longer integration times at the same
+    // gain and light are skipped instead of measured
+    public ParameterSweep setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
+    // ---------- PLAN ----------
+
+    // Full grid in measurement order: light, then gain, then integration time, all ascending
+    public List<Point> plan() {
+
+        int[] lights = sortedCopy(lightIntensities);
+        int[] gainOrder = sortedCopy(gains);
+        int[] times = sortedCopy(integrationTimes);
+
+        List<Point> points = new ArrayList<>();
+        for (int light : lights) {
+            for (int gain : gainOrder) {
+                for (int time : times) {
+                    points.add(new Point(gain, time, light));
+                }
+            }
+        }
+        return points;
+    }
+
+    private static int[] sortedCopy(int[] values) {
+        return Arrays.stream(values).distinct().sorted().toArray();
+    }
+
+    // ---------- EXECUTION ----------
+
+    // Points are named baseName_g<gain>_t<int>_l<light>_<timestamp>. The
+    // spectrometer configuration is restored when the sweep ends.
+    public synchronized CompletableFuture<List<Point>> start(String baseName, Listener listener) {
+
+        if (running != null && !running.isDone()) {
+            throw new IllegalStateException("Sweep is already running");
+        }
+        series.clear();
+
+        CompletableFuture<List<Point>> result = new CompletableFuture<>();
+        running = executor.submit(() -> {
+            Map<String, Object> previous = spectrometer.getParameters();
+            try {
+                result.complete(run(baseName, listener));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                restore(previous);
+            }
+        });
+        return result;
+    }
+
+    public synchronized void cancel() {
+        if (running != null) {
+            running.cancel(true);
+        }
+    }
+
+    public void close() {
+        executor.shutdownNow();
+        fitter.shutdownNow();
+    }
+
+    private List<Point> run(String baseName, Listener listener) throws Exception {
+
+        List<Point> points = plan();
+        List<Future<?>> fits = new ArrayList<>();
+        String mode = "raw";
+
+        Point saturatedAt = null;
+        for (int i = 0; i < points.size(); i++) {
+            Point p = points.get(i);
+
+            if (adaptive && saturatedAt != null
+                    && saturatedAt.gain == p.gain && saturatedAt.lightInt == p.lightInt) {
+                p.skipped = true;
+                if (listener != null) listener.onPoint(p, i, points.size());
+                continue;
+            }
+
+            spectrometer.configure(p.integrationTime, p.gain, 1, mode,
+                                   measurementsPerPoint, p.lightInt);
+
+            String name = baseName + "_g" + p.gain + "_t" + p.integrationTime + "_l" + p.lightInt;
+            CompletableFuture<MeasurementSet> measurement = spectrometer.measureAsync(name);
+            try {
+                p.set = measurement.get();
+            } catch (InterruptedException e) {
+                measurement.cancel(true);
+                throw e;
+            }
+
+            p.saturated = peak(p.set) >= SATURATED * FULL_SCALE;
+            if (p.saturated) {
+                saturatedAt = p;
+            } else {
+                // Fitting runs while the next point is measured
+                fits.add(fitter.submit(() -> addToFit(p)));
+            }
+
+            if (listener != null) listener.onPoint(p, i, points.size());
+        }
+
+        for (Future<?> f : fits) {
+            f.get();
+        }
+        return points;
+    }
+
+    private void addToFit(Point p) {
+        double[] mean = p.set.getAverageAndStd().mean;
+        series.computeIfAbsent(Series.key(p.gain, p.lightInt),
+                               k -> new Series(p.gain, p.lightInt, mean.length))
+              .fit.add(p.integrationTime, mean);
+    }
+
+    private static double peak(MeasurementSet set) {
+        double peak = 0;
+        for (double v : set.getAverageAndStd().max) {
+            peak = Math.max(peak, v);
+        }
+        return peak;
+    }
+
+    private void restore(Map<String, Object> previous) {
+        try {
+            spectrometer.configure(
+                (Integer) previous.get("integrationTime"),
+                (Integer) previous.get("gain"),
+                (Integer) previous.get("avg"),
+                (String) previous.get("mode"),
+                (Integer) previous.get("numberOfMeasurements"),
+                (Integer) previous.get("lightInt")
+            );
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ---------- RESULTS ----------
+
+    // Linearity fits so far, ordered by light then gain
+    public List<Series> getSeries() {
+        List<Series> result = new ArrayList<>(series.values());
+        result.sort(Comparator.comparingInt((Series s) -> s.lightInt)
+                              .thenComparingInt(s -> s.gain));
+        return result;
+    }
+
+    // Slope, intercept and R² of every channel, one row per (gain, light, channel)
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Gain\tLight\tChannel\tSlope\tIntercept\tR²\tPoints\n");
+        for (Series s : getSeries()) {
+            for (int c = 0; c < s.channels; c++) {
+                sb.append(String.format(Locale.ROOT, "%d\t%d\t%d\t%.3f\t%.1f\t%.5f\t%d%n",
+                        s.gain, s.lightInt, c, s.fit.getSlope(c), s.fit.getIntercept(c),
+                        s.fit.getRSquared(c), s.fit.getCount()));
+            }
+        }
+        return sb.toString();
+    }
+
+    // ---------- HELPER CLASSES ----------
+
+    public static class Point {
+        public final int gain;
+        public final int integrationTime;
+        public final int lightInt;
+
+        public MeasurementSet set;      // null when skipped
+        public boolean saturated;
+        public boolean skipped;
+
+        Point(int gain, int integrationTime, int lightInt) {
+            this.gain = gain;
+            this.integrationTime = integrationTime;
+            this.lightInt = lightInt;
+        }
+
+        @Override
+        public String toString() {
+            return "gain=" + gain + " int=" + integrationTime + " light=" + lightInt
+                 + (skipped ? " (skipped)" : saturated ? " (saturated)" : "");
+        }
+    }
+
+    // Counts against integration time for one gain and light level
+    public static class Series {
+        public final int gain;
+        public final int lightInt;
+        public final int channels;
+        public final LinearFit fit;
+
+        Series(int gain, int lightInt, int channels) {
+            this.gain = gain;
+            this.lightInt = lightInt;
+            this.channels = channels;
+            this.fit = new LinearFit(channels);
+        }
+
+        static String key(int gain, int lightInt) {
+            return gain + "/" + lightInt;
+        }
+    }
+}
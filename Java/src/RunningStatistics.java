@@ -0,0 +1,89 @@
+import java.util.Arrays;
+
+// Per-channel mean, variance, min and max updated one frame at a time
+// (Welford's algorithm), so convergence can be checked after every reading
+// without rescanning the stored measurements. Two instances over disjoint
+// data merge exactly (Chan et al.), e.g. partitions summed in parallel.
+public class RunningStatistics {
+
+    private final int channels;
+    private long count = 0;
+    private final double[] mean;
+    private final double[] m2;
+    private final double[] min;
+    private final double[] max;
+
+    public RunningStatistics(int channels) {
+        this.channels = channels;
+        this.mean = new double[channels];
+        this.m2 = new double[channels];
+        this.min = new double[channels];
+        this.max = new double[channels];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    public void add(double[] values) {
+        count++;
+        for (int i = 0; i < channels; i++) {
+            double delta = values[i] - mean[i];
+            mean[i] += delta / count;
+            m2[i] += delta * (values[i] - mean[i]);
+            if (values[i] < min[i]) min[i] = values[i];
+            if (values[i] > max[i]) max[i] = values[i];
+        }
+    }
+
+    // Adds everything other has seen, as if its values had been added one by one
+    public void merge(RunningStatistics other) {
+        if (other.channels != channels) {
+            throw new IllegalArgumentException(
+                "Channel count mismatch: " + other.channels + " != " + channels);
+        }
+        if (other.count == 0) return;
+
+        long n = count + other.count;
+        for (int i = 0; i < channels; i++) {
+            double delta = other.mean[i] - mean[i];
+            mean[i] += delta * other.count / n;
+            m2[i] += other.m2[i] + delta * delta * ((double) count * other.count / n);
+            min[i] = Math.min(min[i], other.min[i]);
+            max[i] = Math.max(max[i], other.max[i]);
+        }
+        count = n;
+    }
+
+    public double getMean(int channel) {
+        return mean[channel];
+    }
+
+    // Population standard deviation, same as MeasurementSet.getAverageAndStd()
+    public double getStd(int channel) {
+        return count > 0 ? Math.sqrt(m2[channel] / count) : 0;
+    }
+
+    public double getMin(int channel) {
+        return min[channel];
+    }
+
+    public double getMax(int channel) {
+        return max[channel];
+    }
+
+    // Standard error of the mean relative to the mean; uses the sample variance
+    public double getRelativeStandardError(int channel) {
+        if (count < 2) return Double.POSITIVE_INFINITY;
+
+        double se = Math.sqrt(m2[channel] / (count - 1) / count);
+        if (se == 0) return 0;
+        return se / Math.abs(mean[channel]);
+    }
+
+    public double getMaxRelativeStandardError() {
+        double max = 0;
+        for (int i = 0; i < channels; i++) {
+            max = Math.max(max, getRelativeStandardError(i));
+        }
+        return max;
+    }
+}
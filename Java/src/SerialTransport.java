@@ -0,0 +1,336 @@
+import com.fazecast.jSerialComm.SerialPort;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.prefs.Preferences;
+
+public class SerialTransport implements Transport {
+
+    // Uno bootloader plus setup() normally prints READY well within this
+    private static final long READY_TIMEOUT_MS = 3000;
+    private static final long ID_TIMEOUT_MS = 300;
+
+    // The I/O thread wakes up at least this often to notice close()
+    private static final int READ_POLL_MS = 100;
+
+    // Last good port and device identity, tried first on the next start
+    private static final Preferences PREFS =
+        Preferences.userRoot().node("spectrometer");
+
+    private final SerialPort port;
+    private volatile Receiver receiver;
+    private String identity;
+
+    private Thread ioThread;
+    private volatile boolean reading = false;
+    private final byte[] buffer = new byte[1024];
+
+    public SerialTransport(SerialPort port) {
+        this.port = port;
+    }
+
+    // ---------- LIFECYCLE ----------
+
+    // Opens and handshakes the port; a transport returned by connect() is
+    // already open, in which case only the receiver is replaced.
+    @Override
+    public void open(Receiver receiver) throws Exception {
+
+        if (!port.isOpen() && !handshake()) {
+            close();
+            throw new Exception("No handshake from " + getName());
+        }
+        this.receiver = receiver;
+    }
+
+    // Waits for the READY line the firmware prints after reset instead of a fixed
+    // sleep, then asks for the device identity. A board that did not reset on open
+    // never prints READY, so an "id" probe is tried before giving up.
+    private boolean handshake() throws Exception {
+
+        FrameReader lines = new FrameReader();
+        receiver = lines;
+
+        port.setBaudRate(115200);
+        port.setNumDataBits(8);
+        port.setNumStopBits(SerialPort.ONE_STOP_BIT);
+        port.setParity(SerialPort.NO_PARITY);
+
+        port.setComPortTimeouts(
+            SerialPort.TIMEOUT_READ_SEMI_BLOCKING | SerialPort.TIMEOUT_WRITE_BLOCKING,
+            READ_POLL_MS,  // read timeout
+            5000           // write timeout
+        );
+
+        if (!port.openPort()) {
+            throw new Exception("Failed to open serial port");
+        }
+        startReading();
+
+        if (waitForLine(lines, "READY", READY_TIMEOUT_MS) == null) {
+            write("id\n".getBytes());
+            identity = waitForLine(lines, "ID ", ID_TIMEOUT_MS);
+            return identity != null;
+        }
+
+        // Older firmware does not know "id"
+        write("id\n".getBytes());
+        String id = waitForLine(lines, "ID ", ID_TIMEOUT_MS);
+        identity = id != null ? id : "legacy";
+        return true;
+    }
+
+    private static String waitForLine(FrameReader lines, String prefix, long timeoutMs)
+            throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long remaining;
+        while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+            String line = lines.nextLine(remaining);
+            if (line == null) return null;
+            if (line.startsWith(prefix)) return line;
+        }
+        return null;
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        OutputStream out = port.getOutputStream();
+        out.write(data);
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        reading = false;
+        if (ioThread != null && ioThread != Thread.currentThread()) {
+            try {
+                ioThread.join(2 * READ_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ioThread = null;
+        if (port.isOpen()) {
+            port.closePort();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return port.getSystemPortName();
+    }
+
+    // ---------- I/O THREAD ----------
+
+    // One thread per port does nothing but read and decode. Whatever consumes the
+    // frames runs elsewhere, so it cannot delay emptying the UART buffer.
+    private void startReading() {
+        reading = true;
+        ioThread = new Thread(this::readLoop, "serial-io-" + getName());
+        ioThread.setDaemon(true);
+        ioThread.setPriority(Thread.MAX_PRIORITY);
+        ioThread.start();
+    }
+
+    private void readLoop() {
+        while (reading) {
+            // Semi-blocking: returns as soon as any bytes arrived, or 0 after READ_POLL_MS
+            int n = port.readBytes(buffer, buffer.length);
+            if (n < 0) {
+                if (reading) System.err.println("Read failed on " + getName());
+                break;
+            }
+            if (n > 0) {
+                receiver.onData(buffer, n);
+            }
+        }
+    }
+
+    // ---------- DISCOVERY ----------
+
+    // Returns an open, handshaken transport. The cached port is tried first,
+    // then all remaining candidates are probed in parallel.
+    public static SerialTransport connect() throws Exception {
+
+        System.out.println("=== SPECTROMETER DEBUG 1: START ===");
+
+        System.out.println("Step 1: Finding ports...");
+        SerialPort[] ports = SerialPort.getCommPorts();
+        System.out.println("PORTS LENGTH: " + ports.length);
+
+        if (ports.length == 0) {
+            System.out.println("NO PORTS FOUND - jSerialComm failed");
+            throw new Exception("No serial ports detected");
+        }
+
+        for (int i = 0; i < ports.length; i++) {
+            System.out.println("Port " + i + ": " +
+                ports[i].getSystemPortName() +
+                " | " + ports[i].getDescriptivePortName());
+        }
+
+        System.out.println("Step 2: Probing candidate ports...");
+
+        List<SerialPort> candidates = findArduinoPorts(ports);
+        if (candidates.isEmpty()) {
+            System.out.println("findArduinoPorts returned no candidates");
+            throw new Exception("Arduino not found");
+        }
+
+        SerialTransport found = null;
+        SerialTransport other = null;   // a different board on the remembered port
+
+        String lastPort = PREFS.get("lastPort", null);
+        String lastIdentity = PREFS.get("lastIdentity", null);
+        for (SerialPort p : candidates) {
+            if (p.getSystemPortName().equals(lastPort)) {
+                candidates.remove(p);
+                found = probe(p);
+
+                // Ports get renumbered when boards are replugged; only reuse the
+                // port if the same board answers, else look for it elsewhere first
+                if (found != null && lastIdentity != null
+                        && !lastIdentity.equals(found.identity)) {
+                    other = found;
+                    found = null;
+                }
+                break;
+            }
+        }
+
+        if (found == null && !candidates.isEmpty()) {
+            try {
+                found = probeAll(candidates);
+            } catch (InterruptedException e) {
+                if (other != null) other.close();
+                throw e;
+            }
+        }
+        if (found == null) {
+            found = other;
+        } else if (other != null) {
+            other.close();
+        }
+        if (found == null) {
+            throw new Exception("Arduino not found");
+        }
+
+        System.out.println("Arduino found: " + found.getName() + " (" + found.identity + ")");
+
+        PREFS.put("lastPort", found.getName());
+        PREFS.put("lastIdentity", found.identity);
+
+        return found;
+    }
+
+    // Returns every candidate port that completes the handshake, probed in parallel
+    public static List<SerialTransport> connectAll() throws Exception {
+
+        List<SerialPort> candidates = findArduinoPorts(SerialPort.getCommPorts());
+        if (candidates.isEmpty()) {
+            throw new Exception("Arduino not found");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(candidates.size(), r -> {
+            Thread t = new Thread(r, "port-probe");
+            t.setDaemon(true);
+            return t;
+        });
+
+        List<Future<SerialTransport>> futures = new ArrayList<>();
+        for (SerialPort p : candidates) {
+            futures.add(pool.submit(() -> probe(p)));
+        }
+        pool.shutdown();
+
+        List<SerialTransport> found = new ArrayList<>();
+        for (Future<SerialTransport> f : futures) {
+            try {
+                SerialTransport t = f.get();
+                if (t != null) found.add(t);
+            } catch (ExecutionException ignored) {}
+        }
+        if (found.isEmpty()) {
+            throw new Exception("Arduino not found");
+        }
+        return found;
+    }
+
+    private static SerialTransport probe(SerialPort p) throws InterruptedException {
+        SerialTransport t = new SerialTransport(p);
+        try {
+            if (t.handshake()) return t;
+        } catch (InterruptedException e) {
+            t.close();
+            throw e;
+        } catch (Exception e) {
+            System.err.println("Probe failed on " + p.getSystemPortName() + ": " + e.getMessage());
+        }
+        t.close();
+        return null;
+    }
+
+    private static SerialTransport probeAll(List<SerialPort> candidates)
+            throws InterruptedException {
+
+        ExecutorService pool = Executors.newFixedThreadPool(candidates.size(), r -> {
+            Thread t = new Thread(r, "port-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<SerialTransport> completion = new ExecutorCompletionService<>(pool);
+
+        List<Future<SerialTransport>> futures = new ArrayList<>();
+        for (SerialPort p : candidates) {
+            futures.add(completion.submit(() -> probe(p)));
+        }
+
+        SerialTransport found = null;
+        try {
+            for (int i = 0; i < futures.size() && found == null; i++) {
+                try {
+                    found = completion.take().get();
+                } catch (ExecutionException ignored) {}
+            }
+        } finally {
+            // Interrupted probes close their own port; close any late winners too
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+            for (Future<SerialTransport> f : futures) {
+                if (!f.isDone() || f.isCancelled()) continue;
+                try {
+                    SerialTransport t = f.get();
+                    if (t != null && t != found) t.close();
+                } catch (ExecutionException ignored) {}
+            }
+        }
+        return found;
+    }
+
+    private static List<SerialPort> findArduinoPorts(SerialPort[] ports) {
+        List<SerialPort> result = new ArrayList<>();
+        for (SerialPort p : ports) {
+            String name = p.getDescriptivePortName().toLowerCase();
+            if (name.contains("arduino") ||
+                p.getSystemPortName().contains("ttyACM") ||
+                p.getSystemPortName().contains("usb")) {
+                result.add(p);
+            }
+        }
+
+        if (result.isEmpty()) {
+            // DEBUG: print ALL available ports
+            System.err.println("=== DEBUG: No Arduino found. Available ports ===");
+            for (SerialPort p : ports) {
+                System.err.println("Port: " + p.getSystemPortName() +
+                                  " | Desc: " + p.getDescriptivePortName());
+            }
+            System.err.println("=== END DEBUG ===");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,346 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// In-process stand-in for the Arduino firmware (Arduino/new_measure.ino).
+// Speaks the same text protocol: read/stream/config/stop/proto with
+// int= gain= avg= mode= light= seq= parameters, plus the one-byte trigger.
+public class SimulatedSpectrometer implements Transport {
+
+    // Tungsten bulb through the AS7262 channels at int=50, gain=16, light=100
+    private static final double[] BASE_SIGNAL = {900, 1500, 2300, 2700, 3100, 3500};
+    private static final double DARK_SIGNAL = 40;
+    private static final double CAL_FACTOR = 0.045;
+    private static final double FULL_SCALE = 65535;
+    private static final char TRIGGER = '!';
+
+    private double msPerIntegrationStep = 2.8;   // AS726x: 2.8 ms per int unit
+    private double noise = 0.01;                 // relative std. dev. of each reading
+    private double jitterMs = 0.5;               // extra random delay per reading
+    private double dropRate = 0.0;               // probability a reply is lost
+    private long bootDelayMs = 0;
+    private double lampWarmupMs = 0;             // time constant of the bulb after a light change
+
+    private final Random random;
+    private final BlockingQueue<String> commands = new LinkedBlockingQueue<>();
+    private final StringBuilder commandBuffer = new StringBuilder();
+
+    private Receiver receiver;
+    private Thread deviceThread;
+    private volatile boolean running = false;
+
+    // Device state
+    private boolean binaryProtocol = false;
+    private boolean streaming = false;
+    private int frameSeq = 0;
+    private final Settings streamSettings = new Settings();
+    private final Settings sessionSettings = new Settings();
+
+    // Bulb output in percent, approaching lampTarget after each change
+    private double lampStart = 50;
+    private double lampTarget = 50;
+    private long lampChangedNanos = 0;
+    private int triggerSeq = 0;
+
+    public SimulatedSpectrometer() {
+        this(new Random());
+    }
+
+    public SimulatedSpectrometer(long seed) {
+        this(new Random(seed));
+    }
+
+    private SimulatedSpectrometer(Random random) {
+        this.random = random;
+    }
+
+    // ---------- CONFIGURATION ----------
+
+    public SimulatedSpectrometer setIntegrationDelay(double msPerIntegrationStep) {
+        this.msPerIntegrationStep = msPerIntegrationStep;
+        return this;
+    }
+
+    public SimulatedSpectrometer setNoise(double relativeNoise) {
+        this.noise = relativeNoise;
+        return this;
+    }
+
+    public SimulatedSpectrometer setJitter(double jitterMs) {
+        this.jitterMs = jitterMs;
+        return this;
+    }
+
+    public SimulatedSpectrometer setDropRate(double dropRate) {
+        this.dropRate = dropRate;
+        return this;
+    }
+
+    public SimulatedSpectrometer setBootDelay(long bootDelayMs) {
+        this.bootDelayMs = bootDelayMs;
+        return this;
+    }
+
+    public SimulatedSpectrometer setLampWarmup(double timeConstantMs) {
+        this.lampWarmupMs = timeConstantMs;
+        return this;
+    }
+
+    // ---------- TRANSPORT ----------
+
+    @Override
+    public void open(Receiver receiver) {
+        this.receiver = receiver;
+        running = true;
+        deviceThread = new Thread(this::run, "simulated-spectrometer");
+        deviceThread.setDaemon(true);
+        deviceThread.start();
+    }
+
+    // Host -> device bytes, split into command lines like the firmware loop()
+    @Override
+    public synchronized void write(byte[] data) throws IOException {
+        if (!running) {
+            throw new IOException("Simulated device is closed");
+        }
+        for (byte b : data) {
+            char c = (char) b;
+            if (c == TRIGGER && commandBuffer.length() == 0) {
+                commands.offer(String.valueOf(TRIGGER));
+            } else if (c == '\n' || c == '\r') {
+                if (commandBuffer.length() > 0) {
+                    commands.offer(commandBuffer.toString());
+                }
+                commandBuffer.setLength(0);
+            } else {
+                commandBuffer.append(c);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (deviceThread != null) {
+            deviceThread.interrupt();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "SIMULATED";
+    }
+
+    // ---------- DEVICE LOOP ----------
+
+    private void run() {
+        try {
+            sleepMs(bootDelayMs);
+            sendLine("READY");
+
+            while (running) {
+                String cmd = streaming
+                    ? commands.poll()
+                    : commands.poll(100, TimeUnit.MILLISECONDS);
+
+                if (cmd != null) {
+                    handleCommand(cmd.trim());
+                } else if (streaming) {
+                    emitReading(streamSettings, -1);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleCommand(String cmd) throws InterruptedException {
+
+        if (cmd.equals(String.valueOf(TRIGGER))) {
+            emitReading(sessionSettings, triggerSeq);
+            triggerSeq = (triggerSeq + 1) & 0xFFFF;
+            return;
+        }
+        if (cmd.equals("id")) {
+            sendLine("ID AS726X simulated");
+            return;
+        }
+        if (cmd.equals("stop")) {
+            streaming = false;
+            sendLine("STOPPED");
+            return;
+        }
+        if (cmd.equals("proto bin")) {
+            sendLine("PROTO BIN");
+            binaryProtocol = true;
+            return;
+        }
+        if (cmd.equals("proto csv")) {
+            binaryProtocol = false;
+            sendLine("PROTO CSV");
+            return;
+        }
+
+        boolean stream = cmd.startsWith("stream");
+        boolean config = cmd.startsWith("config");
+        if (!stream && !config && !cmd.startsWith("read")) return;
+
+        Settings settings = new Settings();
+        long seq = -1;
+
+        for (String token : cmd.substring(stream || config ? 6 : 4).trim().split("\\s+")) {
+            int eq = token.indexOf('=');
+            if (eq == -1) continue;
+
+            String key = token.substring(0, eq);
+            int value;
+            try {
+                value = key.equals("mode") ? 0 : Integer.parseInt(token.substring(eq + 1));
+            } catch (NumberFormatException e) {
+                value = 0;   // Arduino String.toInt() semantics
+            }
+
+            switch (key) {
+                case "int":   settings.integration = value; break;
+                case "gain":  settings.gain = value; break;
+                case "avg":   settings.avg = Math.max(1, value); break;
+                case "mode":  settings.calibrated = token.substring(eq + 1).equals("cal"); break;
+                case "light": settings.lightInt = Math.max(0, Math.min(100, value)); break;
+                case "seq":   seq = value; break;
+                default: break;
+            }
+        }
+
+        if (config) {
+            sessionSettings.copyFrom(settings);
+            triggerSeq = seq >= 0 ? (int) seq & 0xFFFF : 0;
+            sendLine("CONFIG OK");
+            return;
+        }
+        if (stream) {
+            streamSettings.copyFrom(settings);
+            streaming = true;
+            return;
+        }
+
+        emitReading(settings, seq);
+    }
+
+    // ---------- MEASUREMENT ----------
+
+    private void emitReading(Settings s, long seq) throws InterruptedException {
+
+        setLamp(s.lightInt);
+        double[] values = new double[6];
+
+        for (int i = 0; i < s.avg; i++) {
+            sleepMs(s.integration * msPerIntegrationStep + random.nextDouble() * jitterMs);
+
+            for (int c = 0; c < 6; c++) {
+                values[c] += reading(c, s);
+            }
+        }
+        for (int c = 0; c < 6; c++) {
+            values[c] /= s.avg;
+        }
+
+        if (random.nextDouble() < dropRate) return;
+
+        if (binaryProtocol) {
+            if (seq >= 0) frameSeq = (int) seq;
+            byte[] frame = new byte[BinaryFrameDecoder.FRAME_LENGTH];
+            BinaryFrameDecoder.encode(frameSeq, values, frame);
+            frameSeq = (frameSeq + 1) & 0xFFFF;
+            send(frame);
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        if (seq >= 0) {
+            sb.append('#').append(seq).append(' ');
+        }
+        for (int c = 0; c < 6; c++) {
+            sb.append(String.format(Locale.ROOT, "%.3f", values[c]));
+            if (c < 5) sb.append(',');
+        }
+        sendLine(sb.toString());
+    }
+
+    private double reading(int channel, Settings s) {
+        double gainFactor = gainMultiplier(s.gain) / 16.0;
+        double exposure = s.integration / 50.0 * gainFactor;
+
+        double signal = BASE_SIGNAL[channel] * lampLevel() / 100.0 * exposure
+                      + DARK_SIGNAL * exposure;
+        signal += random.nextGaussian() * noise * signal;
+        signal = Math.max(0, Math.min(FULL_SCALE, signal));
+
+        return s.calibrated ? signal * CAL_FACTOR : Math.floor(signal);
+    }
+
+    private void setLamp(int lightInt) {
+        if (lightInt == lampTarget) return;
+        lampStart = lampLevel();
+        lampTarget = lightInt;
+        lampChangedNanos = System.nanoTime();
+    }
+
+    private double lampLevel() {
+        if (lampWarmupMs <= 0) return lampTarget;
+        double t = (System.nanoTime() - lampChangedNanos) / 1e6;
+        return lampTarget + (lampStart - lampTarget) * Math.exp(-t / lampWarmupMs);
+    }
+
+    // Same gain code mapping as the firmware: 1, 3.7, 16, 64
+    private static double gainMultiplier(int gain) {
+        if (gain <= 1) return 1;
+        if (gain <= 4) return 3.7;
+        if (gain <= 16) return 16;
+        return 64;
+    }
+
+    // ---------- OUTPUT ----------
+
+    private void sendLine(String line) {
+        send((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void send(byte[] data) {
+        if (running) {
+            receiver.onData(data, data.length);
+        }
+    }
+
+    private static void sleepMs(double ms) throws InterruptedException {
+        long deadline = System.nanoTime() + (long) (ms * 1_000_000);
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    // ---------- HELPER CLASS ----------
+
+    // Firmware defaults
+    private static class Settings {
+        int integration = 50;
+        int gain = 16;
+        int avg = 1;
+        boolean calibrated = true;
+        int lightInt = 50;
+
+        void copyFrom(Settings other) {
+            integration = other.integration;
+            gain = other.gain;
+            avg = other.avg;
+            calibrated = other.calibrated;
+            lightInt = other.lightInt;
+        }
+    }
+}
@@ -1,86 +1,131 @@
-import com.fazecast.jSerialComm.SerialPort;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 public class Spectrometer {
 
-    private SerialPort port;
+    public enum Protocol { CSV, BINARY }
+
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    private Transport transport;
     private String portName;
+    private FrameReader reader;
+    private Protocol protocol = Protocol.CSV;
+
+    private SpectrumRingBuffer streamBuffer;
+    private MeasurementJournal streamJournal;
+
+    // Optional journal: frames of every acquisition and stream go to disk as they arrive
+    private File journalDirectory;
+    private long journalSyncMs = 1000;
+    private Thread streamThread;
+    private volatile boolean streaming = false;
+
+    // Settings are changed under the lock (configure(), autoExpose()) and read
+    // under it where several belong together; single reads rely on volatile
+    private volatile int integrationTime = 50;
+    private volatile int gain = 16;
+    private volatile int avg = 1;
+    private volatile String mode = "cal";
+    private volatile int numberOfMeasurements = 1;
+    private volatile int lightInt = 50;
+
+    // Read commands kept in flight by measure(); 1 = wait for every reply
+    private volatile int pipelineDepth = 1;
+    private int nextSequence = 0;
+
+    // Auto exposure: peak raw count aimed at this fraction of full scale, and the
+    // longest integration (x 2.8 ms) it picks before raising the gain
+    private volatile double exposureTarget = 0.7;
+    private static final int MAX_INTEGRATION_TIME = 255;
+    private final Map<String, Exposure> exposureCache = new ConcurrentHashMap<>();
+
+    // AS726x gain codes as offered by ConfigureDialog and their actual multipliers
+    private static final int[] GAINS = {1, 4, 16, 64};
+    private static final double[] GAIN_FACTORS = {1, 3.7, 16, 64};
+    private static final double FULL_SCALE = 65535;
+    private static final double SATURATED = 0.98;
+    private static final double EXPOSURE_TOLERANCE = 0.1;
+    private static final int MAX_EXPOSURE_PROBES = 8;
+
+    // Lamp stabilization: short probe reads until the signal stops drifting
+    private volatile boolean lampStabilization = false;
+    private volatile int stableLightInt = -1;              // light level last found stable
+    private static final int STABILITY_WINDOW = 12;        // probes in the moving window
+    private static final double MAX_LAMP_DRIFT = 0.002;    // relative change across the window
+    private static final double MAX_LAMP_NOISE = 0.005;    // relative std. dev. around the trend
+    private static final long LAMP_TIMEOUT_MS = 30_000;
+    private static final int STABILITY_PROBE_INTEGRATION = 10;
+
+    // Interleaved dark correction defaults. Its reads are pipelined on their own
+    // depth, independent of setPipelineDepth(), within the device receive buffer
+    private static final int DARK_BLOCK_READS = 5;
+    private static final int LAMP_SETTLE_READS = 2;
+    private static final int DARK_PIPELINE_DEPTH = 4;
 
-    private int integrationTime = 50;
-    private int gain = 16;
-    private int avg = 1;
-    private String mode = "cal";
-    private int numberOfMeasurements = 1;
-    private int lightInt = 50;
+    // Session protocol: settings go out once as "config", each reading is then
+    // requested with a single trigger byte
+    private static final byte[] TRIGGER = {'!'};
+    private boolean sessionSupported = true;
+    private volatile boolean sessionDirty = true;
+
+    // The Uno buffers at most 64 received bytes while it is busy measuring
+    private static final int DEVICE_RX_BUFFER = 64;
+    private static final int MAX_LOST_IN_ROW = 3;
 
     private MeasurementSet measurementSet = new MeasurementSet();
     private Map<String, Object> params = new HashMap<>();
 
+    // One acquisition at a time, off the caller's thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "spectrometer-acquisition");
+        t.setDaemon(true);
+        return t;
+    });
+    private final SubmissionPublisher<SpectrumFrame> framePublisher =
+        new SubmissionPublisher<>();
+    private final FrameTimings timings = new FrameTimings();
+
     // ---------- CONSTRUCTOR ----------
     public Spectrometer() throws Exception {
+        this(Protocol.BINARY);
+    }
+
+    public Spectrometer(Protocol preferredProtocol) throws Exception {
+        this(SerialTransport.connect(), preferredProtocol);
+    }
+
+    public Spectrometer(Transport transport) throws Exception {
+        this(transport, Protocol.BINARY);
+    }
+
+    public Spectrometer(Transport transport, Protocol preferredProtocol) throws Exception {
+
+        this.transport = transport;
 
         try {
-            System.out.println("=== SPECTROMETER DEBUG 1: START ===");
-            
-            System.out.println("Step 1: Finding ports...");
-            SerialPort[] ports = SerialPort.getCommPorts();
-            System.out.println("PORTS LENGTH: " + ports.length);
-            
-            if (ports.length == 0) {
-                System.out.println("NO PORTS FOUND - jSerialComm failed");
-                throw new Exception("No serial ports detected");
-            }
-            
-            for (int i = 0; i < ports.length; i++) {
-                System.out.println("Port " + i + ": " + 
-                    ports[i].getSystemPortName() + 
-                    " | " + ports[i].getDescriptivePortName());
-            }
-            
-            System.out.println("Step 2: Calling findArduinoPort...");
-
-            // 1. Find Arduino port
-            port = findArduinoPort();
-            if (port == null) {
-                System.out.println("findArduinoPort returned NULL");
-                throw new Exception("Arduino not found");
-            }
-            System.out.println("Arduino found: " + port.getSystemPortName());
-
-            // 2. Configure serial port
-            port.setBaudRate(115200);
-            port.setNumDataBits(8);
-            port.setNumStopBits(SerialPort.ONE_STOP_BIT);
-            port.setParity(SerialPort.NO_PARITY);
-
-            // IMPORTANT: non-blocking mode (no read timeouts)
-            port.setComPortTimeouts(
-                SerialPort.TIMEOUT_READ_SEMI_BLOCKING | SerialPort.TIMEOUT_WRITE_BLOCKING,
-                5000,  // read timeout
-                5000   // write timeout
-            );
-
-            // 3. Open port
-            if (!port.openPort()) {
-                throw new Exception("Failed to open serial port");
-            }
-
-            // 4. Wait for Arduino auto-reset to finish
-            Thread.sleep(2000);
-
-            // 5. Flush any startup garbage (e.g. READY, boot noise)
-            InputStream in = port.getInputStream();
-            byte[] flushBuffer = new byte[256];
-            while (port.bytesAvailable() > 0) {
-                in.read(flushBuffer, 0, Math.min(flushBuffer.length, port.bytesAvailable()));
-                Thread.sleep(10);
-            }
-
-            System.out.println("Connected to " + port.getSystemPortName());
-            portName=port.getSystemPortName();
+            // 1. Open transport with an event-driven reader
+            reader = new FrameReader();
+            reader.setTimings(timings);
+            transport.open(reader);
+
+            // 2. Drop any startup garbage (e.g. READY, boot noise)
+            reader.clear();
+
+            // 3. Negotiate frame protocol, CSV is the fallback
+            if (preferredProtocol == Protocol.BINARY) {
+                negotiateBinary();
+            }
+            System.out.println("Frame protocol: " + protocol);
+
+            portName = transport.getName();
+            System.out.println("Connected to " + portName);
+            timings.register(portName);
 
             // Initialize parameter map with defaults
             params.put("integrationTime", integrationTime);
@@ -92,19 +137,30 @@ public class Spectrometer {
         } catch (Exception e) {
             System.out.println("=== SPECTROMETER EXCEPTION: " + e.getMessage());
             e.printStackTrace();
+            transport.close();
             throw e;
         }
     }
 
 
     // ---------- CONFIGURATION ----------
-    public void configure(int integrationTime,
+    public synchronized void configure(int integrationTime,
                           int gain,
                           int avg,
                           String mode,
                           int numberOfMeasurements,
                           int lightInt) {
 
+        if (integrationTime != this.integrationTime || gain != this.gain
+                || avg != this.avg || !mode.equals(this.mode) || lightInt != this.lightInt) {
+            sessionDirty = true;
+        }
+        // The firmware drives the lamp with the light value of every command, so
+        // a run at another level (e.g. a dark job at 0) undoes the warm-up
+        if (lightInt != this.lightInt) {
+            stableLightInt = -1;
+        }
+
         this.integrationTime = integrationTime;
         this.gain = gain;
         this.avg = avg;
@@ -120,9 +176,90 @@ public class Spectrometer {
         params.put("lightInt", lightInt);
     }
 
+    public void setPipelineDepth(int pipelineDepth) {
+        this.pipelineDepth = Math.max(1, pipelineDepth);
+    }
+
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
 
     // ---------- MEASUREMENT ----------
     public void measure(String baseName) throws Exception {
+        try {
+            measurementSet = measureAsync(baseName).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    public CompletableFuture<MeasurementSet> measureAsync(String baseName) {
+        return measureAsync(baseName, null, 0, TimeUnit.MILLISECONDS);
+    }
+
+    public CompletableFuture<MeasurementSet> measureAsync(String baseName,
+                                                         ProgressListener listener,
+                                                         long timeout,
+                                                         TimeUnit unit) {
+        int count = numberOfMeasurements;
+        return submit(() -> acquire(baseName, listener, count, 0, count), timeout, unit);
+    }
+
+    // Sequential acquisition: stops as soon as every channel's standard error of the
+    // mean is within targetRelativeError of the mean (e.g. 0.001 = 0.1 %), but takes
+    // at least minCount and at most maxCount readings.
+    public CompletableFuture<MeasurementSet> measureUntilConverged(String baseName,
+                                                                  double targetRelativeError,
+                                                                  int minCount,
+                                                                  int maxCount,
+                                                                  ProgressListener listener) {
+        int min = Math.max(2, minCount);
+        int max = Math.max(min, maxCount);
+        return submit(() -> acquire(baseName, listener, max, targetRelativeError, min),
+                      0, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs on the acquisition executor. Cancelling the future or hitting the
+    // timeout (0 = none) interrupts the acquisition.
+    private <T> CompletableFuture<T> submit(Callable<T> acquisition,
+                                            long timeout,
+                                            TimeUnit unit) {
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(acquisition.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+
+        if (timeout > 0) {
+            result.orTimeout(timeout, unit);
+        }
+        result.whenComplete((set, error) -> {
+            if (error != null) task.cancel(true);
+        });
+
+        return result;
+    }
+
+    // Individual frames of every acquisition and stream; lagging subscribers miss frames
+    public Flow.Publisher<SpectrumFrame> getFramePublisher() {
+        return framePublisher;
+    }
+
+    // Takes count readings, or fewer once targetRelativeError (> 0) is met after minCount
+    private MeasurementSet acquire(String baseName, ProgressListener listener,
+                                   int count, double targetRelativeError, int minCount)
+            throws Exception {
+
+        if (streaming) {
+            throw new IllegalStateException("Stream is running");
+        }
 
         DateTimeFormatter fmt =
             DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
@@ -130,81 +267,869 @@ public class Spectrometer {
         String timestamp = LocalDateTime.now().format(fmt);
         String fullName = baseName + "_" + timestamp;
 
-        measurementSet = new MeasurementSet();
-        measurementSet.setParameters(params);
-        measurementSet.setName(fullName);
+        Map<String, Object> settings = getParameters();
+        MeasurementSet set = new MeasurementSet();
+        set.setParameters(settings);
+        set.setName(fullName);
 
-        OutputStream out = port.getOutputStream();
-        InputStream in = port.getInputStream();
+        reader.clear();
 
-        byte[] buffer = new byte[1024];
-        StringBuilder lineBuffer = new StringBuilder();
+        LampStability lamp = null;
+        if (lampStabilization && lightInt > 0 && lightInt != stableLightInt) {
+            lamp = awaitLamp();
+        }
 
-        for (int i = 0; i < numberOfMeasurements; i++) {
+        MeasurementJournal journal = openJournal(fullName, settings);
+        Acquisition run = new Acquisition(set, journal, listener, count, targetRelativeError, minCount);
 
-            String command = String.format(
-                "read int=%d gain=%d avg=%d mode=%s light=%d\n",
-                integrationTime, gain, avg, mode, lightInt
-            );
+        try {
+            boolean session = openSession();
 
-            out.write(command.getBytes());
-            out.flush();
+            if (pipelineDepth > 1) {
+                acquirePipelined(run, session);
+            } else {
+                while (!run.isDone()) {
 
-            long startTime = System.currentTimeMillis();
-            boolean received = false;
+                    long sent = System.nanoTime();
+                    if (session) {
+                        nextSequence = (nextSequence + 1) & 0xFFFF;
+                        transport.write(TRIGGER);
+                    } else {
+                        transport.write(buildCommand("read").getBytes());
+                    }
 
-            while (System.currentTimeMillis() - startTime < 5000) {
+                    double[] spectrum = new double[6];
+                    if (!nextFrame(spectrum, 5000)) {
+                        throw new Exception("Timeout waiting for measurement");
+                    }
+                    timings.commandCompleted(sent, reader.getFrameFirstByte(),
+                                             reader.getFrameTimestamp());
+                    run.accept(spectrum);
+                }
+            }
+        } catch (Exception e) {
+            // Trigger counters may be out of step now, resend config next time
+            sessionDirty = true;
+            throw e;
+        } finally {
+            if (journal != null) journal.close();
+        }
 
-                int available = port.bytesAvailable();
-                if (available <= 0) {
-                    Thread.sleep(5);
-                    continue;
+        if (targetRelativeError > 0 || lamp != null) {
+            Map<String, Object> actual = new HashMap<>(settings);
+            if (targetRelativeError > 0) {
+                actual.put("numberOfMeasurements", run.accepted);
+                actual.put("targetRelativeError", targetRelativeError);
+            }
+            if (lamp != null) {
+                actual.put("lampSettleMs", lamp.elapsedMs);
+                actual.put("lampStable", lamp.stable);
+            }
+            set.setParameters(actual);
+        }
+        return set;
+    }
+
+    // Progress and stopping state of one acquire() call
+    private class Acquisition {
+
+        final MeasurementSet set;
+        final MeasurementJournal journal;
+        final ProgressListener listener;
+        final int count;
+        final double targetRelativeError;
+        final int minCount;
+        final RunningStatistics stats = new RunningStatistics(6);
+
+        int accepted = 0;
+        boolean converged = false;
+
+        Acquisition(MeasurementSet set, MeasurementJournal journal, ProgressListener listener,
+                    int count, double targetRelativeError, int minCount) {
+            this.set = set;
+            this.journal = journal;
+            this.listener = listener;
+            this.count = count;
+            this.targetRelativeError = targetRelativeError;
+            this.minCount = minCount;
+        }
+
+        boolean isDone() {
+            return converged || accepted >= count;
+        }
+
+        void accept(double[] spectrum) throws IOException {
+            long now = System.currentTimeMillis();
+            set.addMeasurement(now, spectrum);
+            if (journal != null) {
+                journal.append(now, spectrum);
+            }
+            accepted++;
+
+            if (targetRelativeError > 0) {
+                stats.add(spectrum);
+                converged = accepted >= minCount
+                    && stats.getMaxRelativeStandardError() <= targetRelativeError;
+            }
+
+            timings.frameAccepted(System.nanoTime());
+            publishFrame(spectrum);
+            if (listener != null) {
+                listener.onProgress(accepted, count);
+            }
+        }
+    }
+
+    private void publishFrame(double[] spectrum) {
+        publishFrame(spectrum, reader.getFrameTimestamp(), reader.getFrameSequence());
+    }
+
+    private void publishFrame(double[] spectrum, long timestamp, int sequence) {
+        if (framePublisher.hasSubscribers()) {
+            framePublisher.offer(
+                new SpectrumFrame(timestamp, sequence, spectrum.clone()),
+                (subscriber, frame) -> false);
+        }
+    }
+
+    // Keeps up to pipelineDepth sequence-tagged reads in flight. The firmware answers
+    // in order, so a reply that skips pending ids means those frames were lost; they
+    // are dropped and replaced by new commands. Late replies to dropped ids are ignored.
+    private void acquirePipelined(Acquisition run, boolean session) throws Exception {
+
+        PendingReads pending = new PendingReads(pipelineDepthFor(pipelineDepth,
+            session ? TRIGGER.length : buildCommand("read", 0xFFFF).length()));
+        double[] spectrum = new double[6];
+
+        while (!run.isDone()) {
+
+            while (!pending.isFull() && run.accepted + pending.size < run.count) {
+                int seq = nextSequence;
+                nextSequence = (nextSequence + 1) & 0xFFFF;
+
+                transport.write(session ? TRIGGER : buildCommand("read", seq).getBytes());
+                pending.add(seq, 0);
+            }
+
+            if (nextPipelinedReply(pending, spectrum) >= 0) {
+                run.accept(spectrum.clone());
+            }
+        }
+
+        // After an early stop, let outstanding replies arrive so they cannot
+        // leak into the next acquisition
+        if (pending.size > 0) {
+            int last = pending.seq[pending.slot(pending.size - 1)];
+            long deadline = pending.sentMillis[pending.slot(pending.size - 1)] + 5000;
+            long remaining;
+            while ((remaining = deadline - System.currentTimeMillis()) > 0
+                   && nextFrame(spectrum, remaining)) {
+                if (reader.getFrameSequence() == last) break;
+            }
+        }
+    }
+
+    // Every queued command must fit into the device receive buffer
+    private static int pipelineDepthFor(int depth, int commandLength) {
+        return Math.min(depth, 1 + DEVICE_RX_BUFFER / commandLength);
+    }
+
+    // Waits for the reply to the oldest pending read and returns the tag it was
+    // sent with. Reads it skipped over are counted as lost and removed with it.
+    // Returns -1 if the oldest read timed out and was given up.
+    private int nextPipelinedReply(PendingReads pending, double[] spectrum) throws Exception {
+
+        while (true) {
+            long remaining = pending.sentMillis[pending.head] + 5000 - System.currentTimeMillis();
+            if (remaining <= 0 || !nextFrame(spectrum, remaining)) {
+                pending.removeFirst(1);
+                if (++pending.lostInRow > MAX_LOST_IN_ROW) {
+                    throw new Exception("Timeout waiting for measurement");
                 }
+                return -1;
+            }
+
+            int index = pending.indexOf(reader.getFrameSequence());
+            if (index < 0) continue;   // stale or untagged reply
+
+            if (index > 0 && pending.lostInRow + index > MAX_LOST_IN_ROW) {
+                throw new Exception("Lost " + (pending.lostInRow + index) + " measurement frames");
+            }
+            int slot = pending.slot(index);
+            timings.commandCompleted(pending.sentNanos[slot],
+                                     reader.getFrameFirstByte(), reader.getFrameTimestamp());
+
+            int tag = pending.tag[slot];
+            pending.removeFirst(index + 1);
+            pending.lostInRow = 0;
+            return tag;
+        }
+    }
+
+    // Read commands in flight, oldest first
+    private static class PendingReads {
+
+        final int[] seq;
+        final int[] tag;          // caller's index of the read
+        final long[] sentMillis;
+        final long[] sentNanos;
+        int head = 0;
+        int size = 0;
+        int lostInRow = 0;
+
+        PendingReads(int capacity) {
+            seq = new int[capacity];
+            tag = new int[capacity];
+            sentMillis = new long[capacity];
+            sentNanos = new long[capacity];
+        }
+
+        boolean isFull() {
+            return size == seq.length;
+        }
+
+        int slot(int index) {
+            return (head + index) % seq.length;
+        }
+
+        void add(int sequence, int readTag) {
+            int tail = slot(size);
+            seq[tail] = sequence;
+            tag[tail] = readTag;
+            sentMillis[tail] = System.currentTimeMillis();
+            sentNanos[tail] = System.nanoTime();
+            size++;
+        }
+
+        int indexOf(int sequence) {
+            for (int i = 0; i < size; i++) {
+                if (seq[slot(i)] == sequence) return i;
+            }
+            return -1;
+        }
+
+        void removeFirst(int n) {
+            head = slot(n);
+            size -= n;
+        }
+    }
+
+
+    // ---------- DARK CORRECTION ----------
+
+    public CompletableFuture<DarkCorrected> measureDarkCorrected(String baseName,
+                                                                ProgressListener listener) {
+        return measureDarkCorrected(baseName, DARK_BLOCK_READS, LAMP_SETTLE_READS, listener);
+    }
+
+    // One pipelined run alternating dark (light=0) and lit blocks of blockReads
+    // readings: D L D L ... D. The first settleReads replies after every lamp
+    // switch are discarded while the lamp settles. Each lit frame is corrected
+    // with the dark level interpolated in time between the dark blocks on either
+    // side, so slow drift of the dark signal is followed. Corrected frames are
+    // published as soon as the following dark block is complete. The number of
+    // measurements is rounded up to whole blocks.
+    public CompletableFuture<DarkCorrected> measureDarkCorrected(String baseName,
+                                                                int blockReads,
+                                                                int settleReads,
+                                                                ProgressListener listener) {
+        int count = numberOfMeasurements;
+        int block = Math.max(1, blockReads);
+        int settle = Math.max(0, settleReads);
+        return submit(() -> acquireDarkCorrected(baseName, count, block, settle, listener),
+                      0, TimeUnit.MILLISECONDS);
+    }
+
+    private DarkCorrected acquireDarkCorrected(String baseName, int count, int blockReads,
+                                               int settleReads, ProgressListener listener)
+            throws Exception {
+
+        if (streaming) {
+            throw new IllegalStateException("Stream is running");
+        }
 
-                int n = in.read(buffer, 0, Math.min(buffer.length, available));
-                if (n <= 0) continue;
+        String timestamp = LocalDateTime.now().format(
+            DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
 
-                for (int j = 0; j < n; j++) {
-                    char c = (char) buffer[j];
+        Map<String, Object> settings = getParameters();
+        Map<String, Object> lightParams = new HashMap<>(settings);
+        lightParams.put("darkCorrection", "interleaved");
+        lightParams.put("darkBlockReads", blockReads);
+        lightParams.put("lampSettleReads", settleReads);
+        MeasurementSet corrected = new MeasurementSet();
+        corrected.setParameters(lightParams);
+        corrected.setName(baseName + "_" + timestamp);
 
-                    if (c == '\n') {
-                        String line = lineBuffer.toString().trim();
-                        lineBuffer.setLength(0);
+        Map<String, Object> darkParams = new HashMap<>(settings);
+        darkParams.put("lightInt", 0);
+        MeasurementSet dark = new MeasurementSet();
+        dark.setParameters(darkParams);
+        dark.setName(baseName + "_dark_" + timestamp);
 
-                        if (!line.contains(",")) continue;
+        reader.clear();
 
-                        try {
-                            double[] spectrum = parseCSV(line);
-                            measurementSet.addMeasurement(spectrum);
-                            received = true;
-                            break;
-                        } catch (Exception ignored) {}
-                    } else if (c != '\r') {
-                        lineBuffer.append(c);
+        int blockLength = settleReads + blockReads;
+        int blocks = 2 * ((count + blockReads - 1) / blockReads) + 1;
+        int total = blocks * blockLength;
+
+        PendingReads pending = new PendingReads(pipelineDepthFor(DARK_PIPELINE_DEPTH,
+            buildCommand("read", 0xFFFF, 100).length()));
+        double[] spectrum = new double[6];
+
+        DarkLevel previousDark = null;
+        DarkLevel currentDark = new DarkLevel();
+        List<LitFrame> lit = new ArrayList<>();
+        int currentBlock = 0;
+        int sent = 0;
+        int done = 0;
+
+        try {
+            while (sent < total || pending.size > 0) {
+
+                while (!pending.isFull() && sent < total) {
+                    int seq = nextSequence;
+                    nextSequence = (nextSequence + 1) & 0xFFFF;
+
+                    boolean darkRead = (sent / blockLength) % 2 == 0;
+                    transport.write(buildCommand("read", seq, darkRead ? 0 : lightInt).getBytes());
+                    pending.add(seq, sent++);
+                }
+
+                int index = nextPipelinedReply(pending, spectrum);
+                if (index < 0) continue;
+
+                if (listener != null) {
+                    listener.onProgress(++done, total);
+                }
+
+                int block = index / blockLength;
+                if (block != currentBlock) {
+                    // Replies arrive in order, so the previous block is complete
+                    if (currentBlock % 2 == 0) {
+                        previousDark = finishDarkBlock(previousDark, currentDark, lit, corrected);
+                        currentDark = new DarkLevel();
                     }
+                    currentBlock = block;
                 }
+                if (index % blockLength < settleReads) continue;   // lamp still settling
 
-                if (received) break;
+                long now = System.currentTimeMillis();
+                if (block % 2 == 0) {
+                    currentDark.add(spectrum, reader.getFrameTimestamp());
+                    dark.addMeasurement(now, spectrum.clone());
+                } else {
+                    // A dark block lost entirely leaves two lit blocks waiting here
+                    lit.add(new LitFrame(now, new SpectrumFrame(reader.getFrameTimestamp(),
+                                                                reader.getFrameSequence(),
+                                                                spectrum.clone())));
+                }
             }
+            finishDarkBlock(previousDark, currentDark, lit, corrected);
+        } finally {
+            // Full read commands used up sequence ids the device's trigger counter
+            // never saw; the next session acquisition has to resend config
+            sessionDirty = true;
+            stableLightInt = -1;
+        }
+
+        return new DarkCorrected(corrected, dark);
+    }
+
+    // Corrects the lit frames waiting for this dark block and returns the dark
+    // level for the next lit block
+    private DarkLevel finishDarkBlock(DarkLevel before, DarkLevel after,
+                                     List<LitFrame> lit, MeasurementSet corrected)
+            throws Exception {
+
+        if (after.count == 0) after = before;   // every dark reply of the block was lost
+        if (lit.isEmpty()) return after;
+
+        if (before == null && after == null) {
+            throw new Exception("No dark reference received");
+        }
+        if (before == null) before = after;
+        if (after == null) after = before;
+
+        double[] darkBefore = before.mean();
+        double[] darkAfter = after.mean();
+        double span = after.meanTime - before.meanTime;
 
-            if (!received) {
-                throw new Exception("Timeout waiting for measurement");
+        for (LitFrame pending : lit) {
+            SpectrumFrame frame = pending.frame;
+            double f = span > 0 ? (frame.timestampNanos - before.meanTime) / span : 0;
+            for (int c = 0; c < frame.values.length; c++) {
+                frame.values[c] -= darkBefore[c] + f * (darkAfter[c] - darkBefore[c]);
             }
+            corrected.addMeasurement(pending.time, frame.values);
+            timings.frameAccepted(System.nanoTime());
+            publishFrame(frame.values, frame.timestampNanos, frame.sequence);
         }
+        lit.clear();
+        return after;
     }
 
+    // A lit frame waiting for its closing dark block, with the wall clock (ms)
+    // it was read at
+    private static class LitFrame {
 
-    private double[] parseCSV(String line) throws Exception {
-        String[] tokens = line.split(",");
-        if (tokens.length != 6) {
-            throw new Exception("Invalid data");
+        final long time;
+        final SpectrumFrame frame;
+
+        LitFrame(long time, SpectrumFrame frame) {
+            this.time = time;
+            this.frame = frame;
+        }
+    }
+
+    // Mean reading and mean arrival time of one dark block
+    private static class DarkLevel {
+
+        final double[] sum = new double[6];
+        double meanTime = 0;
+        int count = 0;
+
+        void add(double[] spectrum, long timestampNanos) {
+            for (int c = 0; c < sum.length; c++) {
+                sum[c] += spectrum[c];
+            }
+            count++;
+            meanTime += (timestampNanos - meanTime) / count;
         }
 
-        double[] values = new double[6];
-        for (int i = 0; i < 6; i++) {
-            values[i] = Double.parseDouble(tokens[i]);
+        double[] mean() {
+            double[] mean = new double[sum.length];
+            for (int c = 0; c < sum.length; c++) {
+                mean[c] = sum[c] / count;
+            }
+            return mean;
         }
-        return values;
+    }
+
+
+    // ---------- AUTO EXPOSURE ----------
+
+    public void setExposureTarget(double fractionOfFullScale) {
+        this.exposureTarget = Math.max(0.05, Math.min(0.95, fractionOfFullScale));
+    }
+
+    public double getExposureTarget() {
+        return exposureTarget;
+    }
+
+    // Finds integration time and gain that put the brightest channel near the
+    // exposure target, applies them and remembers them for sampleName. Starts from
+    // the cached settings of the sample, so a repeat usually costs a single probe.
+    public CompletableFuture<Exposure> autoExpose(String sampleName) {
+        return submit(() -> {
+            Exposure e = searchExposure(exposureCache.get(sampleName));
+            exposureCache.put(sampleName, e);
+            applyExposure(e);
+            return e;
+        }, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void applyExposure(Exposure e) {
+        if (e.integrationTime != integrationTime || e.gain != gain) {
+            sessionDirty = true;
+        }
+        integrationTime = e.integrationTime;
+        gain = e.gain;
+        params.put("integrationTime", integrationTime);
+        params.put("gain", gain);
+    }
+
+    // Signal is linear in integration time x gain factor, so an unsaturated probe
+    // predicts the right exposure directly. A saturated probe only gives an upper
+    // bound; the next guess stays below it, predicted from the best unsaturated
+    // probe so far or a large step down when there is none.
+    private Exposure searchExposure(Exposure start) throws Exception {
+
+        // The stream pump owns the frame ring while it runs
+        if (streaming) {
+            throw new IllegalStateException("Stream is running");
+        }
+        reader.clear();
+
+        double exposure = start != null
+            ? exposureOf(start.integrationTime, start.gain)
+            : exposureOf(integrationTime, gain);
+
+        double low = 0, lowPeak = 0;           // brightest exposure known unsaturated
+        double high = Double.POSITIVE_INFINITY; // dimmest exposure known saturated
+        Exposure best = null;
+
+        for (int probes = 1; probes <= MAX_EXPOSURE_PROBES; probes++) {
+
+            int[] setting = quantizeExposure(exposure);
+            exposure = exposureOf(setting[0], setting[1]);
+
+            double peak = probePeak(setting[0], setting[1]) / FULL_SCALE;
+            Exposure probe = new Exposure(setting[0], setting[1], peak, probes);
+
+            boolean saturated = peak >= SATURATED;
+            if (!saturated && (best == null
+                    || Math.abs(peak - exposureTarget) < Math.abs(best.peakFraction - exposureTarget))) {
+                best = probe;
+            }
+            if (!saturated && Math.abs(peak - exposureTarget) <= EXPOSURE_TOLERANCE * exposureTarget) {
+                return probe;
+            }
+
+            double next;
+            if (saturated) {
+                high = Math.min(high, exposure);
+                next = low > 0 ? low * exposureTarget / lowPeak : exposure / 8;
+            } else {
+                if (exposure > low) {
+                    low = exposure;
+                    lowPeak = peak;
+                }
+                next = peak > 0 ? exposure * exposureTarget / peak : exposure * 16;
+            }
+            if (next >= high) {
+                next = Math.sqrt(Math.max(low, exposure / 8) * high);
+            }
+
+            // Out of range or no finer step available: keep the best probe
+            int[] nextSetting = quantizeExposure(next);
+            if (nextSetting[0] == setting[0] && nextSetting[1] == setting[1]) {
+                return best != null ? best.withProbes(probes) : probe;
+            }
+            exposure = next;
+        }
+
+        if (best == null) {
+            throw new Exception("Auto exposure failed: sample saturates at the lowest setting");
+        }
+        return best.withProbes(MAX_EXPOSURE_PROBES);
+    }
+
+    // Raw counts of the brightest channel for one unaveraged read
+    private double probePeak(int integration, int gainCode) throws Exception {
+
+        double[] spectrum = new double[6];
+        probeRaw(integration, gainCode, spectrum);
+
+        double peak = 0;
+        for (double v : spectrum) {
+            peak = Math.max(peak, v);
+        }
+        return peak;
+    }
+
+    // One unaveraged raw read at the current light level, outside any session
+    private void probeRaw(int integration, int gainCode, double[] spectrum) throws Exception {
+
+        transport.write(String.format(
+            "read int=%d gain=%d avg=1 mode=raw light=%d\n",
+            integration, gainCode, lightInt
+        ).getBytes());
+
+        if (!nextFrame(spectrum, 5000)) {
+            throw new Exception("Timeout waiting for probe read");
+        }
+    }
+
+    private static double exposureOf(int integration, int gainCode) {
+        for (int g = GAINS.length - 1; g >= 0; g--) {
+            if (gainCode >= GAINS[g]) return integration * GAIN_FACTORS[g];
+        }
+        return integration * GAIN_FACTORS[0];
+    }
+
+    // Lowest gain that reaches the exposure within MAX_INTEGRATION_TIME: a longer
+    // integration collects more light and so gives the less noisy reading
+    private int[] quantizeExposure(double exposure) {
+        for (int g = 0; g < GAINS.length; g++) {
+            long integration = Math.round(exposure / GAIN_FACTORS[g]);
+            if (integration <= MAX_INTEGRATION_TIME) {
+                return new int[]{(int) Math.max(1, integration), GAINS[g]};
+            }
+        }
+        return new int[]{MAX_INTEGRATION_TIME, GAINS[GAINS.length - 1]};
+    }
+
+    // ---------- LAMP STABILIZATION ----------
+
+    // When enabled, an acquisition at a light level that has not been found
+    // stable yet first waits for the lamp instead of a fixed warm-up delay
+    public void setLampStabilization(boolean enabled) {
+        this.lampStabilization = enabled;
+    }
+
+    // Takes short raw probe reads at the configured light level and fits a line
+    // to the total signal of the last STABILITY_WINDOW probes. The lamp counts as
+    // stable once the fitted change across the window and the scatter around the
+    // fit are both below their limits. Gives up after LAMP_TIMEOUT_MS and reports
+    // an unstable lamp instead of failing the acquisition.
+    private LampStability awaitLamp() throws Exception {
+
+        int window = STABILITY_WINDOW;
+        double[] times = new double[window];
+        double[] signal = new double[window];
+        double[] spectrum = new double[6];
+
+        long start = System.nanoTime();
+        int probes = 0;
+        int filled = 0;
+        int gainIndex = GAINS.length - 1;
+        while (gainIndex > 0 && GAINS[gainIndex] > gain) gainIndex--;
+        double drift = Double.NaN;
+        double noise = Double.NaN;
+
+        while (true) {
+            probeRaw(STABILITY_PROBE_INTEGRATION, GAINS[gainIndex], spectrum);
+
+            double total = 0, peak = 0;
+            for (double v : spectrum) {
+                total += v;
+                peak = Math.max(peak, v);
+            }
+
+            // A clipped channel looks perfectly stable; step the gain down and restart
+            if (peak >= SATURATED * FULL_SCALE && gainIndex > 0) {
+                gainIndex--;
+                filled = 0;
+                continue;
+            }
+
+            int slot = filled++ % window;
+            times[slot] = (reader.getFrameTimestamp() - start) / 1e9;
+            signal[slot] = total;
+            probes++;
+
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            if (filled >= window) {
+                double[] fit = fitTrend(times, signal);
+                drift = fit[0];
+                noise = fit[1];
+
+                if (drift <= MAX_LAMP_DRIFT && noise <= MAX_LAMP_NOISE) {
+                    stableLightInt = lightInt;
+                    System.out.println("Lamp stable after " + elapsedMs + " ms");
+                    return new LampStability(true, elapsedMs, probes, drift, noise);
+                }
+            }
+            if (elapsedMs >= LAMP_TIMEOUT_MS) {
+                System.out.println("Lamp not stable after " + elapsedMs + " ms, continuing");
+                return new LampStability(false, elapsedMs, probes, drift, noise);
+            }
+        }
+    }
+
+    // Least-squares line through the window; returns the relative change of the
+    // line across the window and the relative std. dev. of the residuals
+    private static double[] fitTrend(double[] t, double[] y) {
+        int n = t.length;
+
+        double meanT = 0, meanY = 0;
+        for (int i = 0; i < n; i++) {
+            meanT += t[i];
+            meanY += y[i];
+        }
+        meanT /= n;
+        meanY /= n;
+        if (meanY <= 0) return new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+
+        double covTY = 0, varT = 0, minT = t[0], maxT = t[0];
+        for (int i = 0; i < n; i++) {
+            covTY += (t[i] - meanT) * (y[i] - meanY);
+            varT += (t[i] - meanT) * (t[i] - meanT);
+            minT = Math.min(minT, t[i]);
+            maxT = Math.max(maxT, t[i]);
+        }
+        double slope = varT > 0 ? covTY / varT : 0;
+
+        double residuals = 0;
+        for (int i = 0; i < n; i++) {
+            double r = y[i] - (meanY + slope * (t[i] - meanT));
+            residuals += r * r;
+        }
+
+        double drift = Math.abs(slope) * (maxT - minT) / meanY;
+        double noise = Math.sqrt(residuals / (n - 2)) / meanY;
+        return new double[]{drift, noise};
+    }
+
+    // ---------- JOURNAL ----------
+
+    // Each acquisition and stream is journaled to <directory>/<name>.msj, synced to
+    // disk every syncIntervalMs; null turns journaling off
+    public synchronized void setJournal(File directory, long syncIntervalMs) {
+        this.journalDirectory = directory;
+        this.journalSyncMs = syncIntervalMs;
+    }
+
+    private synchronized MeasurementJournal openJournal(String name, Map<String, Object> settings)
+            throws IOException {
+        if (journalDirectory == null) return null;
+        return MeasurementJournal.create(journalDirectory, name, settings, 6, journalSyncMs);
+    }
+
+    // ---------- STREAMING ----------
+
+    // Device emits frames back to back until stopStream(); frames land in the returned buffer
+    public SpectrumRingBuffer startStream(int capacity,
+                                          SpectrumRingBuffer.OverflowPolicy policy)
+            throws IOException {
+
+        if (streaming) {
+            throw new IllegalStateException("Stream is already running");
+        }
+
+        streamBuffer = new SpectrumRingBuffer(capacity, 6, policy);
+        reader.clear();
+
+        String timestamp = LocalDateTime.now().format(
+            DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
+        streamJournal = openJournal("stream_" + timestamp, getParameters());
+
+        try {
+            transport.write(buildCommand("stream").getBytes());
+        } catch (IOException e) {
+            if (streamJournal != null) streamJournal.close();
+            streamJournal = null;
+            throw e;
+        }
+
+        streaming = true;
+        streamThread = new Thread(this::pumpStream, "spectrometer-stream");
+        streamThread.setDaemon(true);
+        streamThread.start();
+
+        return streamBuffer;
+    }
+
+    public void stopStream() throws IOException, InterruptedException {
+
+        if (!streaming) return;
+
+        // Stop the pump first so it cannot swallow the STOPPED line
+        streaming = false;
+        streamBuffer.close();
+        streamThread.join();
+        streamThread = null;
+
+        if (streamJournal != null) {
+            streamJournal.close();
+            streamJournal = null;
+        }
+
+        transport.write("stop\n".getBytes());
+
+        // Discard frames still in flight until the device confirms
+        long deadline = System.currentTimeMillis() + 5000;
+        long remaining;
+        while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+            String line = reader.nextLine(remaining);
+            if (line == null || line.equals("STOPPED")) break;
+        }
+    }
+
+    // Moves frames in batches from the reader ring into the stream buffer. A BLOCK
+    // stream buffer only ever stalls this thread, never the serial receive thread.
+    private void pumpStream() {
+        double[] spectrum = new double[6];
+        SpscFrameRing.FrameHandler handler = (data, offset, timestamp, firstByte, sequence) -> {
+            System.arraycopy(data, offset, spectrum, 0, spectrum.length);
+            if (!streamBuffer.put(spectrum, timestamp, sequence)) return;
+            timings.frameAccepted(System.nanoTime());
+            publishFrame(spectrum, timestamp, sequence);
+            journalStreamFrame(spectrum);
+        };
+        try {
+            while (streaming) {
+                reader.drainFrames(handler, 64, 100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A failing disk ends the journal, not the stream
+    private void journalStreamFrame(double[] spectrum) {
+        if (streamJournal == null) return;
+        try {
+            streamJournal.append(System.currentTimeMillis(), spectrum);
+        } catch (IOException e) {
+            e.printStackTrace();
+            try {
+                streamJournal.close();
+            } catch (IOException ignored) {}
+            streamJournal = null;
+        }
+    }
+
+
+    // ---------- FRAMES ----------
+
+    // Copies the next spectrum into dst; returns false if none arrived within the timeout
+    private boolean nextFrame(double[] dst, long timeoutMs) throws InterruptedException {
+        return reader.nextFrame(dst, timeoutMs);
+    }
+
+    // Older firmware ignores "proto", so no answer means CSV
+    private void negotiateBinary() throws IOException, InterruptedException {
+
+        transport.write("proto bin\n".getBytes());
+
+        if (waitForLine("PROTO BIN", 500)) {
+            reader.setBinary(true);
+            protocol = Protocol.BINARY;
+            return;
+        }
+        protocol = Protocol.CSV;
+    }
+
+    // Sends the device settings as "config" when they changed since the last one.
+    // The device numbers trigger replies from the config seq= on, in step with
+    // nextSequence. Firmware without session support never answers; full read
+    // commands are used from then on.
+    private boolean openSession() throws IOException, InterruptedException {
+
+        if (!sessionSupported) return false;
+        if (!sessionDirty) return true;
+
+        // Cleared before the settings are read, so a configure() meanwhile marks it again
+        sessionDirty = false;
+        transport.write(buildCommand("config", nextSequence).getBytes());
+
+        if (waitForLine("CONFIG OK", 500)) {
+            return true;
+        }
+        System.out.println("No session support, sending full read commands");
+        sessionSupported = false;
+        return false;
+    }
+
+    private boolean waitForLine(String expected, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long remaining;
+        while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+            String line = reader.nextLine(remaining);
+            if (line == null) return false;
+            if (line.equals(expected)) return true;
+        }
+        return false;
+    }
+
+    private synchronized String buildCommand(String verb) {
+        return String.format(
+            "%s int=%d gain=%d avg=%d mode=%s light=%d\n",
+            verb, integrationTime, gain, avg, mode, lightInt
+        );
+    }
+
+    private String buildCommand(String verb, int seq) {
+        return buildCommand(verb, seq, lightInt);
+    }
+
+    private synchronized String buildCommand(String verb, int seq, int light) {
+        return String.format(
+            "%s int=%d gain=%d avg=%d mode=%s light=%d seq=%d\n",
+            verb, integrationTime, gain, avg, mode, light, seq
+        );
     }
 
     // ---------- ACCESS ----------
@@ -212,33 +1137,98 @@ public class Spectrometer {
         return measurementSet;
     }
 
+    // Current configure() values under the keys stored with every MeasurementSet
+    public synchronized Map<String, Object> getParameters() {
+        return new HashMap<>(params);
+    }
+
+
     public String getPortName() {
         return portName;
     }
 
+    public FrameTimings getTimings() {
+        return timings;
+    }
+
+    // Link health for the status bar: frames lost, damaged, or dropped because
+    // the frame ring was full
+    public long getLostFrames() {
+        return reader.getLostFrames();
+    }
+
+    public long getCorruptFrames() {
+        return reader.getCorruptFrames();
+    }
+
+    public long getDroppedFrames() {
+        return reader.getDroppedFrames();
+    }
+
     public void close() {
-        if (port != null && port.isOpen()) {
-            port.closePort();
+        if (streaming) {
+            try {
+                stopStream();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
+        executor.shutdownNow();
+        framePublisher.close();
+        timings.unregister();
+        transport.close();
     }
 
-    private SerialPort findArduinoPort() {
-        for (SerialPort p : SerialPort.getCommPorts()) {
-            String name = p.getDescriptivePortName().toLowerCase();
-            if (name.contains("arduino") ||
-                p.getSystemPortName().contains("ttyACM") ||
-                p.getSystemPortName().contains("usb")) {
-                return p;
-            }
+    // ---------- HELPER CLASS ----------
+
+    private static class LampStability {
+        public final boolean stable;     // false if the timeout was reached first
+        public final long elapsedMs;
+        public final int probes;
+        public final double drift;       // relative change across the last window
+        public final double noise;       // relative scatter around the trend
+
+        public LampStability(boolean stable, long elapsedMs, int probes,
+                             double drift, double noise) {
+            this.stable = stable;
+            this.elapsedMs = elapsedMs;
+            this.probes = probes;
+            this.drift = drift;
+            this.noise = noise;
+        }
+    }
+
+    public static class DarkCorrected {
+        public final MeasurementSet corrected;   // lit frames minus interpolated dark
+        public final MeasurementSet dark;        // the dark frames used
+
+        public DarkCorrected(MeasurementSet corrected, MeasurementSet dark) {
+            this.corrected = corrected;
+            this.dark = dark;
+        }
+    }
+
+    public static class Exposure {
+        public final int integrationTime;
+        public final int gain;
+        public final double peakFraction;   // brightest channel / full scale at these settings
+        public final int probes;            // probe reads the search took
+
+        public Exposure(int integrationTime, int gain, double peakFraction, int probes) {
+            this.integrationTime = integrationTime;
+            this.gain = gain;
+            this.peakFraction = peakFraction;
+            this.probes = probes;
+        }
+
+        Exposure withProbes(int probes) {
+            return new Exposure(integrationTime, gain, peakFraction, probes);
         }
 
-        // DEBUG: print ALL available ports
-        System.err.println("=== DEBUG: No Arduino found. Available ports ===");
-        for (SerialPort p : SerialPort.getCommPorts()) {
-            System.err.println("Port: " + p.getSystemPortName() + 
-                              " | Desc: " + p.getDescriptivePortName());
+        @Override
+        public String toString() {
+            return String.format("int=%d gain=%d peak=%.0f%% (%d probes)",
+                                 integrationTime, gain, peakFraction * 100, probes);
         }
-        System.err.println("=== END DEBUG ===");
-        return null;
     }
 }
@@ -0,0 +1,12 @@
+public class SpectrumFrame {
+
+    public final long timestampNanos;   // System.nanoTime() when the frame arrived
+    public final int sequence;          // device sequence id, -1 if none
+    public final double[] values;
+
+    public SpectrumFrame(long timestampNanos, int sequence, double[] values) {
+        this.timestampNanos = timestampNanos;
+        this.sequence = sequence;
+        this.values = values;
+    }
+}
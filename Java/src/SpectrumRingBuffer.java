@@ -0,0 +1,171 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class SpectrumRingBuffer {
+
+    // OVERWRITE: producer never waits, slow subscribers skip the oldest frames
+    // BLOCK:     producer waits until every subscriber has room again
+    public enum OverflowPolicy { OVERWRITE, BLOCK }
+
+    private final int capacity;
+    private final int channels;
+    private final OverflowPolicy policy;
+
+    // Preallocated storage: frame k lives at data[slot * channels ...]
+    private final double[] data;
+    private final long[] timestamps;
+    private final int[] sequences;
+
+    private long writeSeq = 0;
+    private boolean closed = false;
+
+    private final List<Cursor> cursors = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    public SpectrumRingBuffer(int capacity, int channels, OverflowPolicy policy) {
+        if (capacity <= 0 || channels <= 0) {
+            throw new IllegalArgumentException("Capacity and channels must be positive");
+        }
+        this.capacity = capacity;
+        this.channels = channels;
+        this.policy = policy;
+        this.data = new double[capacity * channels];
+        this.timestamps = new long[capacity];
+        this.sequences = new int[capacity];
+    }
+
+    // ---------- PRODUCER ----------
+
+    // Returns false if the buffer was closed before the frame could be stored
+    public boolean put(double[] frame, long timestampNanos) throws InterruptedException {
+        return put(frame, timestampNanos, -1);
+    }
+
+    // sequence is the device sequence id of the frame, -1 if it has none
+    public boolean put(double[] frame, long timestampNanos, int sequence)
+            throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (policy == OverflowPolicy.BLOCK) {
+                while (!closed && writeSeq - slowestReadSeq() >= capacity) {
+                    notFull.await();
+                }
+            }
+            if (closed) return false;
+
+            int slot = (int) (writeSeq % capacity);
+            System.arraycopy(frame, 0, data, slot * channels, channels);
+            timestamps[slot] = timestampNanos;
+            sequences[slot] = sequence;
+            writeSeq++;
+
+            notEmpty.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---------- CONSUMERS ----------
+
+    // New subscribers only see frames written after they subscribed
+    public Cursor subscribe() {
+        lock.lock();
+        try {
+            Cursor c = new Cursor(writeSeq);
+            cursors.add(c);
+            return c;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long slowestReadSeq() {
+        long min = writeSeq;
+        for (Cursor c : cursors) {
+            min = Math.min(min, c.readSeq);
+        }
+        return min;
+    }
+
+    public class Cursor implements AutoCloseable {
+
+        private long readSeq;
+        private long dropped = 0;
+        private long lastTimestamp;
+        private int lastSequence = -1;
+
+        private Cursor(long startSeq) {
+            this.readSeq = startSeq;
+        }
+
+        // Copies the next frame into dst; returns false on timeout or when closed and drained
+        public boolean next(double[] dst, long timeoutMs) throws InterruptedException {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+            lock.lockInterruptibly();
+            try {
+                while (readSeq >= writeSeq) {
+                    if (closed || nanos <= 0) return false;
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+
+                if (writeSeq - readSeq > capacity) {
+                    // OVERWRITE policy lapped this subscriber
+                    dropped += writeSeq - capacity - readSeq;
+                    readSeq = writeSeq - capacity;
+                }
+
+                int slot = (int) (readSeq % capacity);
+                System.arraycopy(data, slot * channels, dst, 0, channels);
+                lastTimestamp = timestamps[slot];
+                lastSequence = sequences[slot];
+                readSeq++;
+
+                notFull.signalAll();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public long getLastTimestamp() {
+            return lastTimestamp;
+        }
+
+        public int getLastSequence() {
+            return lastSequence;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                cursors.remove(this);
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
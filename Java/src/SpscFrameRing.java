@@ -0,0 +1,171 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Lock-free single-producer/single-consumer ring of primitive frame slots.
+// The producer (the serial I/O thread) never blocks and never waits for the
+// consumer: when the ring is full the new frame is dropped and counted, so a
+// slow consumer cannot stall draining the UART. The consumer may change
+// threads (acquisition, stream pump) as long as only one reads at a time.
+public class SpscFrameRing {
+
+    public interface FrameHandler {
+        // data[offset .. offset + channels) is only valid during the call
+        void onFrame(double[] data, int offset, long timestampNanos,
+                     long firstByteNanos, int sequence) throws InterruptedException;
+    }
+
+    private static final int SPINS = 100;
+
+    private final int capacity;
+    private final int mask;
+    private final int channels;
+
+    // Slot k lives at data[k * channels ...]
+    private final double[] data;
+    private final long[] timestamps;
+    private final long[] firstBytes;
+    private final int[] sequences;
+
+    // Written only by their owner and published with release semantics
+    private final AtomicLong writeIndex = new AtomicLong();
+    private final AtomicLong readIndex = new AtomicLong();
+    private long cachedReadIndex = 0;    // producer's view of readIndex
+    private volatile Thread waiter;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Consumer-side details of the frame last returned by poll()
+    private long lastTimestamp;
+    private long lastFirstByte;
+    private int lastSequence = -1;
+
+    public SpscFrameRing(int capacity, int channels) {
+        if (capacity <= 0 || channels <= 0) {
+            throw new IllegalArgumentException("Capacity and channels must be positive");
+        }
+        // Rounded up to a power of two so slots are found with a mask
+        int size = 1;
+        while (size < capacity) size <<= 1;
+
+        this.capacity = size;
+        this.mask = size - 1;
+        this.channels = channels;
+        this.data = new double[size * channels];
+        this.timestamps = new long[size];
+        this.firstBytes = new long[size];
+        this.sequences = new int[size];
+    }
+
+    // ---------- PRODUCER ----------
+
+    // Returns false if the ring was full and the frame was dropped
+    public boolean offer(double[] frame, long timestampNanos, long firstByteNanos, int sequence) {
+        long write = writeIndex.get();
+
+        if (write - cachedReadIndex >= capacity) {
+            cachedReadIndex = readIndex.get();
+            if (write - cachedReadIndex >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+
+        int slot = (int) write & mask;
+        System.arraycopy(frame, 0, data, slot * channels, channels);
+        timestamps[slot] = timestampNanos;
+        firstBytes[slot] = firstByteNanos;
+        sequences[slot] = sequence;
+        // A full volatile store, not lazySet: the read of waiter below must not
+        // move ahead of it, or a consumer that just parked would be missed
+        writeIndex.set(write + 1);
+
+        Thread t = waiter;
+        if (t != null) LockSupport.unpark(t);
+        return true;
+    }
+
+    // ---------- CONSUMER ----------
+
+    // Copies the next frame into dst; returns false if none arrived within the timeout
+    public boolean poll(double[] dst, long timeoutMs) throws InterruptedException {
+        long read = readIndex.get();
+        if (!awaitFrames(read, timeoutMs)) return false;
+
+        int slot = (int) read & mask;
+        System.arraycopy(data, slot * channels, dst, 0, channels);
+        lastTimestamp = timestamps[slot];
+        lastFirstByte = firstBytes[slot];
+        lastSequence = sequences[slot];
+        readIndex.lazySet(read + 1);
+        return true;
+    }
+
+    // Hands up to maxFrames frames to the handler straight from the slots and
+    // releases them to the producer in one step. Waits up to timeoutMs for the
+    // first frame; returns the number of frames handled.
+    public int drain(FrameHandler handler, int maxFrames, long timeoutMs)
+            throws InterruptedException {
+
+        long read = readIndex.get();
+        if (!awaitFrames(read, timeoutMs)) return 0;
+
+        long end = Math.min(writeIndex.get(), read + maxFrames);
+        long next = read;
+        try {
+            for (; next < end; next++) {
+                int slot = (int) next & mask;
+                handler.onFrame(data, slot * channels, timestamps[slot],
+                                firstBytes[slot], sequences[slot]);
+            }
+        } finally {
+            readIndex.lazySet(next);
+        }
+        return (int) (next - read);
+    }
+
+    private boolean awaitFrames(long read, long timeoutMs) throws InterruptedException {
+        // Frames often arrive in bursts; a short spin avoids a park/unpark round trip
+        for (int spin = 0; spin < SPINS; spin++) {
+            if (writeIndex.get() > read) return true;
+            Thread.onSpinWait();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        waiter = Thread.currentThread();
+        try {
+            long remaining;
+            while (writeIndex.get() <= read) {
+                if ((remaining = deadline - System.nanoTime()) <= 0) return false;
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+            return true;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    // Discards everything written so far
+    public void skipAll() {
+        readIndex.lazySet(writeIndex.get());
+    }
+
+    // ---------- ACCESS ----------
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public long getLastFirstByte() {
+        return lastFirstByte;
+    }
+
+    public int getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,18 @@
+import java.io.IOException;
+
+// Byte pipe between Spectrometer and a device. Implementations push received
+// bytes to the Receiver from their own thread as soon as they arrive.
+public interface Transport {
+
+    interface Receiver {
+        void onData(byte[] data, int length);
+    }
+
+    void open(Receiver receiver) throws Exception;
+
+    void write(byte[] data) throws IOException;
+
+    void close();
+
+    String getName();
+}
@@ -339,6 +339,93 @@ public class Visualizer {
         return chart;
     }
 
+    /* ===================== KINETICS ===================== */
+
+    // Absorbance vs time, one series per channel, at most maxPoints per series
+    public XYChart createKineticsChart(KineticsRecorder recorder, int maxPoints) {
+
+        XYChart chart = new XYChartBuilder()
+                .width(800)
+                .height(600)
+                .title("Kinetics")
+                .xAxisTitle("Time (s)")
+                .yAxisTitle("Absorbance")
+                .build();
+
+        for (int c = 0; c < recorder.getChannels(); c++) {
+            KineticsRecorder.Series series = recorder.getSeries(c, maxPoints);
+            chart.addSeries(channelName(c), toPlotList(series.time), toPlotList(series.absorbance));
+        }
+        chart.getStyler().setMarkerSize(0);
+        return chart;
+    }
+
+    // Live view: replaces the data of a chart built by createKineticsChart()
+    public void updateKineticsChart(XYChart chart, KineticsRecorder recorder, int maxPoints) {
+        for (int c = 0; c < recorder.getChannels(); c++) {
+            KineticsRecorder.Series series = recorder.getSeries(c, maxPoints);
+            chart.updateXYSeries(channelName(c),
+                    toPlotList(series.time), toPlotList(series.absorbance), null);
+        }
+    }
+
+    private String channelName(int channel) {
+        return channel < wavelengthsNm.length
+                ? String.format("%.0f nm", wavelengthsNm[channel])
+                : "Channel " + (channel + 1);
+    }
+
+    /* ===================== TIME SERIES ===================== */
+
+    // Every channel against time since the first reading (or reading number when
+    // the set has no times), averaged down to at most maxPoints per series
+    public XYChart createTimeSeriesChart(int maxPoints) {
+
+        int n = measurementSet.size();
+        boolean timed = n > 1 && measurementSet.getTimestamp(0) != measurementSet.getTimestamp(n - 1);
+
+        XYChart chart = new XYChartBuilder()
+                .width(800)
+                .height(600)
+                .title("Time Series")
+                .xAxisTitle(timed ? "Time (s)" : "Reading")
+                .yAxisTitle(getYLabel())
+                .build();
+
+        int step = Math.max(1, (n + maxPoints - 1) / maxPoints);
+        int points = (n + step - 1) / step;
+
+        double[] x = new double[points];
+        for (int p = 0; p < points; p++) {
+            x[p] = timed
+                    ? (measurementSet.getTimestamp(p * step) - measurementSet.getTimestamp(0)) / 1000.0
+                    : p * step + 1;
+        }
+
+        // Straight down each column, no per-row arrays
+        for (int c = 0; c < measurementSet.getChannels(); c++) {
+            MeasurementSet.Column column = measurementSet.getColumn(c);
+            double[] y = new double[points];
+            for (int p = 0; p < points; p++) {
+                int from = p * step;
+                int to = Math.min(n, from + step);
+                double sum = 0;
+                for (int r = from; r < to; r++) {
+                    sum += column.get(r);
+                }
+                y[p] = sum / (to - from);
+            }
+            chart.addSeries(channelName(c), toPlotList(x), toPlotList(y));
+        }
+        chart.getStyler().setMarkerSize(0);
+        return chart;
+    }
+
+    // XChart rejects empty series, so a recording without points shows nothing
+    private List<Double> toPlotList(double[] arr) {
+        return arr.length > 0 ? toList(arr) : toList(new double[]{Double.NaN});
+    }
+
     /* ===================== HELPERS ===================== */
 
     private String getYLabel() {